@@ -0,0 +1,151 @@
+package com.example.recipe.domain;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * An entry of the ingredient catalog: one row per normalized ingredient name, referenced by the
+ * ingredients of the recipes, so that searches compare integer ids rather than names. The entry also
+ * keeps the name as first entered, for display; the normalized name is only a key.
+ *
+ * Entries are never changed once created, and are kept in the second-level cache.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "catalog-ingredient")
+@Table(name = "catalog_ingredient")
+public class CatalogIngredient implements Serializable {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Shortest word left once a plural ending is removed: "toes" and "pies" lose their s, not their es or ies.
+     */
+    private static final int MIN_STEM = 3;
+
+    /**
+     * Plurals the regular rules get wrong, and words ending in s that are not plurals.
+     */
+    private static final Map<String, String> SINGULARS = new HashMap<>();
+
+    static {
+        for (String invariant : new String[] {"molasses", "grits", "schnapps", "brussels", "bitters"}) {
+            SINGULARS.put(invariant, invariant);
+        }
+        for (String singular : new String[] {"cookie", "brownie", "calorie", "smoothie", "veggie", "hoagie",
+                "quiche", "brioche", "ganache", "sloe"}) {
+            SINGULARS.put(singular + "s", singular);
+        }
+        SINGULARS.put("leaves", "leaf");
+        SINGULARS.put("loaves", "loaf");
+        SINGULARS.put("halves", "half");
+        SINGULARS.put("geese", "goose");
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "catalog_ingredient_id")
+    @TableGenerator(name = "catalog_ingredient_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "catalog_ingredient", allocationSize = 50)
+    private Integer catalogIngredientId;
+
+    @Column(nullable = false, unique = true)
+    private String name;
+
+    @Column(nullable = false)
+    private String displayName;
+
+    /**
+     * Constructor to fully initialize the CatalogIngredient
+     *
+     * @param name normalized name
+     * @param displayName the name as entered, its whitespace collapsed
+     */
+    public CatalogIngredient(String name, String displayName) {
+        this.name = name;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Collapse the whitespace of an ingredient name, keeping its case.
+     *
+     * @param name ingredient name
+     * @return the name trimmed, its words separated by single spaces
+     */
+    public static String collapseWhitespace(String name) {
+        return WHITESPACE.matcher(name.trim()).replaceAll(" ");
+    }
+
+    /**
+     * Fold the case and the whitespace of an ingredient name.
+     *
+     * @param name ingredient name
+     * @return the name trimmed, lower case, its words separated by single spaces
+     */
+    public static String foldCase(String name) {
+        return collapseWhitespace(name).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The catalog name of an ingredient name: its case and whitespace folded, and the plural of its last
+     * word folded to the singular by the regular English rules. Words the rules get wrong are looked up
+     * in a list of exceptions, and an ending is only removed when at least three letters are left.
+     * V3_4_1__FillIngredientCatalog applies this method to the names stored before the catalog.
+     *
+     * @param name ingredient name
+     * @return the catalog name
+     */
+    public static String normalize(String name) {
+        String folded = foldCase(name);
+        int space = folded.lastIndexOf(' ');
+        return folded.substring(0, space + 1) + singular(folded.substring(space + 1));
+    }
+
+    private static String singular(String word) {
+        String singular = SINGULARS.get(word);
+        if (singular != null) {
+            return singular;
+        }
+        int length = word.length();
+        if (word.endsWith("ies") && length - 3 >= MIN_STEM) {
+            return word.substring(0, length - 3) + "y";
+        }
+        if ((word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes") || word.endsWith("xes")
+                || word.endsWith("sses")) && length - 2 >= MIN_STEM) {
+            return word.substring(0, length - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is")
+                && length - 1 >= MIN_STEM) {
+            return word.substring(0, length - 1);
+        }
+        return word;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogIngredient{" +
+                "catalogIngredientId=" + catalogIngredientId +
+                ", name='" + name + '\'' +
+                ", displayName='" + displayName + '\'' +
+                '}';
+    }
+}
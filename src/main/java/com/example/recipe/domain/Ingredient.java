@@ -2,6 +2,7 @@ package com.example.recipe.domain;
 
 import java.io.Serializable;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
@@ -12,32 +13,53 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
+/**
+ * An ingredient of a recipe, with the name and measurement entered by the client.
+ * The name also points to its entry in the ingredient catalog, which the searches compare.
+ */
 @Entity
 @Getter
 @Setter
 @NoArgsConstructor
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ingredient")
 @DiscriminatorValue("Ingredient")
 @Table(name="ingredient")
 public class Ingredient implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ingredient_id")
+    @TableGenerator(name = "ingredient_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "ingredient", allocationSize = 50)
     private Long ingredientId;
 
     @Column
     private String name;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "catalog_ingredient_id")
+    @JsonIgnore
+    private CatalogIngredient catalogIngredient;
+
     @Column
     private String measurement;
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @Version
+    @Column
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "recipe_id")
     @JsonIgnore
@@ -55,7 +77,6 @@ public class Ingredient implements Serializable {
                 "ingredientId=" + ingredientId +
                 ", name='" + name + '\'' +
                 ", measurement='" + measurement + '\'' +
-                ", recipe=" + recipe.toString() +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.example.recipe.domain;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * Some of the fields of a recipe, selected column by column so that the others are never read.
+ */
+@Getter
+public class PartialRecipe implements Serializable {
+
+    private final Long recipeId;
+
+    /**
+     * Values of the selected fields, in declaration order.
+     */
+    private final Map<RecipeField, Object> values;
+
+    /**
+     * Constructor to fully initialize the PartialRecipe
+     *
+     * @param recipeId recipe identifier
+     * @param values values of the selected fields
+     */
+    public PartialRecipe(Long recipeId, Map<RecipeField, Object> values) {
+        this.recipeId = recipeId;
+        this.values = Collections.unmodifiableMap(new EnumMap<>(values));
+    }
+
+    /**
+     * Select fields of a recipe already loaded.
+     *
+     * @param recipe recipe
+     * @param fields fields to keep
+     * @return the PartialRecipe
+     */
+    public static PartialRecipe of(RecipeView recipe, Set<RecipeField> fields) {
+        Map<RecipeField, Object> values = new EnumMap<>(RecipeField.class);
+        fields.forEach(field -> values.put(field, field.valueOf(recipe)));
+        return new PartialRecipe(recipe.getRecipeId(), values);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.recipe.domain;
 import java.io.Serializable;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -11,24 +12,40 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import javax.persistence.Version;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * The Recipe contains all attributes of a dish.
  *
+ * Ids are allocated 50 at a time from the id_generator table rather than by the database on insert,
+ * so that Hibernate can batch the inserts of recipes and their ingredients.
+ * The ingredients are loaded on demand, for up to 50 recipes per statement; use cases needing them
+ * up front fetch them with RecipeRepository#findWithIngredientsById.
+ * Recipes and their ingredient lists are kept in the second-level cache.
+ * The version is incremented on every change of the recipe or of one of its ingredients.
+ *
  * Created by Vashisth Soni
  */
 @Entity
 @Getter
 @Setter
 @NoArgsConstructor
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "recipe")
 @Table(name="recipe")
-public class Recipe implements Serializable{
+public class Recipe implements RecipeView, Serializable{
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "recipe_id")
+    @TableGenerator(name = "recipe_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "recipe", allocationSize = 50)
     private Long recipeId;
 
     @Column
@@ -46,7 +63,13 @@ public class Recipe implements Serializable{
     @Column
     private Integer noOfServings;
 
+    @Version
+    @Column
+    private Long version;
+
     @OneToMany(mappedBy = "recipe", cascade =  CascadeType.ALL)
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "recipe-ingredients")
     private List<Ingredient> ingredients;
 
     public Recipe(String name, String instructions, boolean containsMeat, boolean isVegan, Integer noOfServings, List<Ingredient> ingredients) {
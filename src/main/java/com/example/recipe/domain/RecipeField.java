@@ -0,0 +1,77 @@
+package com.example.recipe.domain;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A field of a recipe that clients may ask for on its own, named as in the recipe responses.
+ */
+public enum RecipeField {
+    NAME("name", "name", RecipeView::getName),
+    INSTRUCTIONS("instructions", "instructions", RecipeView::getInstructions),
+    CONTAINS_MEAT("containsMeat", "containsMeat", RecipeView::isContainsMeat),
+    VEGAN("vegan", "isVegan", RecipeView::isVegan),
+    NO_OF_SERVINGS("noOfServings", "noOfServings", RecipeView::getNoOfServings);
+
+    private static final Map<String, RecipeField> BY_NAME = new HashMap<>();
+
+    static {
+        for (RecipeField field : values()) {
+            BY_NAME.put(field.fieldName, field);
+        }
+    }
+
+    private final String fieldName;
+    private final String attribute;
+    private final Function<RecipeView, Object> getter;
+
+    RecipeField(String fieldName, String attribute, Function<RecipeView, Object> getter) {
+        this.fieldName = fieldName;
+        this.attribute = attribute;
+        this.getter = getter;
+    }
+
+    /**
+     * @return the name of the field in the responses
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return the name of the Recipe attribute in JPQL
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * @param recipe recipe
+     * @return the value of this field
+     */
+    public Object valueOf(RecipeView recipe) {
+        return getter.apply(recipe);
+    }
+
+    /**
+     * Parse a comma separated list of field names.
+     *
+     * @param fields field names
+     * @return the fields, in declaration order
+     * @throws IllegalArgumentException if a name is not a field
+     */
+    public static Set<RecipeField> parse(String fields) {
+        Set<RecipeField> parsed = EnumSet.noneOf(RecipeField.class);
+        for (String name : fields.split(",")) {
+            RecipeField field = BY_NAME.get(name.trim());
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field " + name.trim());
+            }
+            parsed.add(field);
+        }
+        return parsed;
+    }
+}
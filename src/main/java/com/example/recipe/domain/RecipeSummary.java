@@ -0,0 +1,44 @@
+package com.example.recipe.domain;
+
+import java.io.Serializable;
+
+import lombok.Getter;
+
+/**
+ * Read-only projection of a Recipe, selected column by column so that no managed entity is loaded.
+ */
+@Getter
+public class RecipeSummary implements RecipeView, Serializable {
+
+    private final Long recipeId;
+
+    private final String name;
+
+    private final String instructions;
+
+    private final boolean containsMeat;
+
+    private final boolean vegan;
+
+    private final Integer noOfServings;
+
+    /**
+     * Constructor to fully initialize the RecipeSummary, used by the JPQL constructor expressions.
+     *
+     * @param recipeId recipe identifier
+     * @param name name
+     * @param instructions instructions
+     * @param containsMeat containsMeat
+     * @param vegan isVegan
+     * @param noOfServings noOfServings
+     */
+    public RecipeSummary(Long recipeId, String name, String instructions, boolean containsMeat, boolean vegan,
+                         Integer noOfServings) {
+        this.recipeId = recipeId;
+        this.name = name;
+        this.instructions = instructions;
+        this.containsMeat = containsMeat;
+        this.vegan = vegan;
+        this.noOfServings = noOfServings;
+    }
+}
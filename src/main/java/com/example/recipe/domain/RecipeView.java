@@ -0,0 +1,19 @@
+package com.example.recipe.domain;
+
+/**
+ * The attributes of a recipe shown to clients, without its ingredients.
+ */
+public interface RecipeView {
+
+    Long getRecipeId();
+
+    String getName();
+
+    String getInstructions();
+
+    boolean isContainsMeat();
+
+    boolean isVegan();
+
+    Integer getNoOfServings();
+}
@@ -1,5 +1,7 @@
 package com.example.recipe.domain;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 
 import javax.persistence.*;
@@ -9,6 +11,8 @@ import javax.persistence.*;
  * Created by Vashisth Soni
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "security-role")
 @Table(name="security_role")
 public class Role  implements GrantedAuthority {
     private static final long serialVersionUID = 1L;
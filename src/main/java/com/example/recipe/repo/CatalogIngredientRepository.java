@@ -0,0 +1,40 @@
+package com.example.recipe.repo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.QueryHint;
+
+import com.example.recipe.domain.CatalogIngredient;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+/**
+ * Catalog Ingredient Repository Interface
+ */
+@RepositoryRestResource(exported = false)
+public interface CatalogIngredientRepository extends JpaRepository<CatalogIngredient, Integer> {
+
+    /**
+     * Lookup a catalog entry by its normalized name.
+     *
+     * @param name normalized name
+     * @return the entry, if found
+     */
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "catalog-queries")})
+    Optional<CatalogIngredient> findByName(String name);
+
+    /**
+     * Lookup the catalog entries of several normalized names.
+     *
+     * @param names normalized names
+     * @return the entries found
+     */
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "catalog-queries")})
+    List<CatalogIngredient> findByNameIn(Collection<String> names);
+}
@@ -1,5 +1,6 @@
 package com.example.recipe.repo;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -8,7 +9,10 @@ import com.example.recipe.domain.Recipe;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
 /**
@@ -36,6 +40,40 @@ public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
      */
     Page<Ingredient> findByRecipe(Recipe recipe, Pageable pageable);
 
+    /**
+     * Lookup a page of Ingredients by the recipe identifier, without loading the recipe.
+     *
+     * @param recipeId recipe identifier
+     * @param pageable details for the desired page
+     * @return a Page of any found Ingredients
+     */
+    @Query(value = "select i from Ingredient i where i.recipe.recipeId = :recipeId",
+            countQuery = "select count(i) from Ingredient i where i.recipe.recipeId = :recipeId")
+    Page<Ingredient> findByRecipeId(@Param("recipeId") Long recipeId, Pageable pageable);
+
+    /**
+     * Lookup the Ingredients of a recipe following an ingredient, in id order and without counting them,
+     * as a range scan of ix_ingredient_recipe_id.
+     *
+     * @param recipeId recipe identifier
+     * @param after ingredient id to continue after, 0 for the first slice
+     * @param pageable size of the slice, from its first page
+     * @return a Slice of any found Ingredients, telling whether more follow
+     */
+    @Query("select i from Ingredient i where i.recipe.recipeId = :recipeId and i.ingredientId > :after"
+            + " order by i.ingredientId")
+    Slice<Ingredient> findByRecipeIdAfter(@Param("recipeId") Long recipeId, @Param("after") Long after,
+                                          Pageable pageable);
+
+    /**
+     * Lookup the version of an Ingredient, without loading it.
+     *
+     * @param ingredientId ingredient identifier
+     * @return the version, if found
+     */
+    @Query("select i.version from Ingredient i where i.ingredientId = :ingredientId")
+    Optional<Long> findVersionById(@Param("ingredientId") Long ingredientId);
+
     /**
      * Lookup a Ingredient by the recipe and ingredient Id
      * @param recipe
@@ -43,4 +81,24 @@ public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
      * @return Ingredients if found, null otherwise.
      */
     Optional<Ingredient> findByRecipeAndIngredientId(Recipe recipe, Long id);
+
+    /**
+     * Lookup an Ingredient by the recipe identifier and its id, without loading the recipe.
+     *
+     * @param recipeId recipe identifier
+     * @param ingredientId ingredient identifier
+     * @return the Ingredient, if found
+     */
+    @Query("select i from Ingredient i where i.recipe.recipeId = :recipeId and i.ingredientId = :ingredientId")
+    Optional<Ingredient> findByRecipeIdAndIngredientId(@Param("recipeId") Long recipeId,
+                                                       @Param("ingredientId") Long ingredientId);
+
+    /**
+     * Lookup several Ingredients of a recipe by their ids.
+     *
+     * @param recipe recipe
+     * @param ids ingredient identifiers
+     * @return the Ingredients found, ids of other recipes left out
+     */
+    List<Ingredient> findByRecipeAndIngredientIdIn(Recipe recipe, Collection<Long> ids);
 }
\ No newline at end of file
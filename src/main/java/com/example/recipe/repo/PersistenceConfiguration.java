@@ -0,0 +1,132 @@
+package com.example.recipe.repo;
+
+import java.security.Principal;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jpa.HibernateMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Persistence Configuration
+ *
+ * When recipe.datasource.replica.url is set, read-only transactions are served by the replica
+ * and everything else by spring.datasource; otherwise Spring Boot configures the single data source.
+ */
+@Configuration
+public class PersistenceConfiguration {
+    private static final ThreadLocal<Object> BOUND_CLIENT = new ThreadLocal<>();
+
+    /**
+     * Publish the Hibernate statistics, second-level and query cache hits included, as metrics.
+     *
+     * @param entityManagerFactory Entity Manager Factory
+     * @return the binder of the hibernate.* metrics
+     */
+    @Bean
+    public HibernateMetrics hibernateMetrics(EntityManagerFactory entityManagerFactory) {
+        return new HibernateMetrics(entityManagerFactory, "entityManagerFactory", Tags.empty());
+    }
+
+    /**
+     * The client of the current thread: the one bound by runAs, else that of the current request,
+     * its user once authenticated and its address otherwise.
+     *
+     * @return the key of the client, null outside of a request
+     */
+    public static Object client() {
+        Object bound = BOUND_CLIENT.get();
+        if (bound != null) {
+            return bound;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user:" + principal.getName() : "address:" + request.getRemoteAddr();
+    }
+
+    /**
+     * Run work for a client on a thread that does not serve its request, so that its reads and writes
+     * are routed as those of the request would be.
+     *
+     * @param client key of the client, read with client on the request thread
+     * @param work the work
+     * @param <T> type of the result
+     * @return the result of the work
+     */
+    public static <T> T runAs(Object client, Supplier<T> work) {
+        Object previous = BOUND_CLIENT.get();
+        BOUND_CLIENT.set(client);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                BOUND_CLIENT.remove();
+            } else {
+                BOUND_CLIENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Primary and replica pools behind a routing data source.
+     */
+    @Configuration
+    @ConditionalOnProperty("recipe.datasource.replica.url")
+    static class ReplicaConfiguration {
+
+        /**
+         * Route the connections between the primary and the replica.
+         *
+         * @param dataSourceProperties spring.datasource properties of the primary
+         * @param environment environment holding the recipe.datasource.replica properties
+         * @param lagWindowMillis milliseconds after a write during which reads stay on the primary
+         * @param maximumPoolSize connections of each of the pools
+         * @return the data source of the application
+         * @throws Exception if the replica properties are invalid
+         */
+        @Bean
+        @Primary
+        public DataSource dataSource(DataSourceProperties dataSourceProperties, Environment environment,
+                                     @Value("${recipe.datasource.replica.lag-window-ms:1000}") long lagWindowMillis,
+                                     @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize)
+                throws Exception {
+            DataSourceProperties replicaProperties = Binder.get(environment)
+                    .bind("recipe.datasource.replica", DataSourceProperties.class).get();
+            replicaProperties.afterPropertiesSet();
+            DataSource primary = pool(dataSourceProperties, "primary", maximumPoolSize);
+            DataSource replica = pool(replicaProperties, "replica", maximumPoolSize);
+            ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, lagWindowMillis,
+                    PersistenceConfiguration::client);
+            routing.afterPropertiesSet();
+            return new LazyConnectionDataSourceProxy(routing);
+        }
+
+        private static DataSource pool(DataSourceProperties properties, String name, int maximumPoolSize) {
+            HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            pool.setPoolName(name);
+            pool.setMaximumPoolSize(maximumPoolSize);
+            return pool;
+        }
+    }
+}
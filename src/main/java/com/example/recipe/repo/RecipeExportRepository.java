@@ -0,0 +1,44 @@
+package com.example.recipe.repo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.RecipeSummary;
+
+/**
+ * Reads the whole catalog of the Recipe Repository as a stream, for exports and index rebuilds.
+ */
+public interface RecipeExportRepository {
+
+    /**
+     * Read every recipe with its ingredients in recipe id order, through a forward-only cursor.
+     * Only one recipe is held in memory at a time; the ingredients passed are not managed entities.
+     * Must be called within a transaction.
+     *
+     * @param fetchSize number of rows fetched from the database at a time
+     * @param consumer receives each recipe and its ingredients
+     */
+    void scrollWithIngredients(int fetchSize, BiConsumer<RecipeSummary, List<Ingredient>> consumer);
+
+    /**
+     * Read the attributes of every recipe with the names of its ingredients in recipe id order, through
+     * a forward-only cursor. The recipes passed carry neither name nor instructions.
+     * Must be called within a transaction.
+     *
+     * @param fetchSize number of rows fetched from the database at a time
+     * @param consumer receives each recipe and its ingredient names per ingredient id
+     */
+    void scrollIngredientNames(int fetchSize, BiConsumer<RecipeSummary, Map<Long, String>> consumer);
+
+    /**
+     * Read every recipe without its ingredients in recipe id order, through a forward-only cursor.
+     * Must be called within a transaction.
+     *
+     * @param fetchSize number of rows fetched from the database at a time
+     * @param consumer receives each recipe
+     */
+    void scrollSummaries(int fetchSize, Consumer<RecipeSummary> consumer);
+}
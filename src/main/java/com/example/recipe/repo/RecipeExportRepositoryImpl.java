@@ -0,0 +1,109 @@
+package com.example.recipe.repo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.RecipeSummary;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+
+/**
+ * Hibernate implementation of the Recipe export.
+ *
+ * Recipes are joined to their ingredients and read as scalar rows, so nothing enters the persistence context
+ * and memory does not grow with the catalog; consecutive rows of the same recipe are grouped back together.
+ */
+public class RecipeExportRepositoryImpl implements RecipeExportRepository {
+    private static final String EXPORT_QUERY = "select r.recipeId, r.name, r.instructions, r.containsMeat, r.isVegan, "
+            + "r.noOfServings, i.ingredientId, i.name, i.measurement "
+            + "from Recipe r left join r.ingredients i order by r.recipeId, i.ingredientId";
+    private static final String SUMMARY_QUERY = "select r.recipeId, r.name, r.instructions, r.containsMeat, "
+            + "r.isVegan, r.noOfServings from Recipe r order by r.recipeId";
+    private static final String NAMES_QUERY = "select r.recipeId, r.containsMeat, r.isVegan, r.noOfServings, "
+            + "i.ingredientId, i.name "
+            + "from Recipe r left join r.ingredients i order by r.recipeId, i.ingredientId";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void scrollWithIngredients(int fetchSize, BiConsumer<RecipeSummary, List<Ingredient>> consumer) {
+        try (ScrollableResults rows = scroll(EXPORT_QUERY, fetchSize)) {
+            RecipeSummary recipe = null;
+            List<Ingredient> ingredients = new ArrayList<>();
+            while (rows.next()) {
+                Object[] row = rows.get();
+                Long recipeId = (Long) row[0];
+                if (recipe == null || !recipe.getRecipeId().equals(recipeId)) {
+                    if (recipe != null) {
+                        consumer.accept(recipe, ingredients);
+                        ingredients = new ArrayList<>();
+                    }
+                    recipe = new RecipeSummary(recipeId, (String) row[1], (String) row[2], (Boolean) row[3],
+                            (Boolean) row[4], (Integer) row[5]);
+                }
+                if (row[6] != null) {
+                    Ingredient ingredient = new Ingredient((String) row[7], (String) row[8], null);
+                    ingredient.setIngredientId((Long) row[6]);
+                    ingredients.add(ingredient);
+                }
+            }
+            if (recipe != null) {
+                consumer.accept(recipe, ingredients);
+            }
+        }
+    }
+
+    @Override
+    public void scrollIngredientNames(int fetchSize, BiConsumer<RecipeSummary, Map<Long, String>> consumer) {
+        try (ScrollableResults rows = scroll(NAMES_QUERY, fetchSize)) {
+            RecipeSummary recipe = null;
+            Map<Long, String> names = new HashMap<>();
+            while (rows.next()) {
+                Object[] row = rows.get();
+                Long recipeId = (Long) row[0];
+                if (recipe == null || !recipe.getRecipeId().equals(recipeId)) {
+                    if (recipe != null) {
+                        consumer.accept(recipe, names);
+                        names = new HashMap<>();
+                    }
+                    recipe = new RecipeSummary(recipeId, null, null, (Boolean) row[1], (Boolean) row[2],
+                            (Integer) row[3]);
+                }
+                if (row[4] != null && row[5] != null) {
+                    names.put((Long) row[4], (String) row[5]);
+                }
+            }
+            if (recipe != null) {
+                consumer.accept(recipe, names);
+            }
+        }
+    }
+
+    @Override
+    public void scrollSummaries(int fetchSize, Consumer<RecipeSummary> consumer) {
+        try (ScrollableResults rows = scroll(SUMMARY_QUERY, fetchSize)) {
+            while (rows.next()) {
+                Object[] row = rows.get();
+                consumer.accept(new RecipeSummary((Long) row[0], (String) row[1], (String) row[2], (Boolean) row[3],
+                        (Boolean) row[4], (Integer) row[5]));
+            }
+        }
+    }
+
+    private ScrollableResults scroll(String jpql, int fetchSize) {
+        return entityManager.createQuery(jpql).unwrap(Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.recipe.repo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.example.recipe.domain.PartialRecipe;
+import com.example.recipe.domain.RecipeField;
+
+/**
+ * Loads of some of the fields of Recipes.
+ */
+public interface RecipeFieldsRepository {
+
+    /**
+     * Lookup the given fields of Recipes, selecting no other column.
+     *
+     * @param recipeIds recipe identifiers
+     * @param fields fields to select, at least one
+     * @return the PartialRecipes of the Recipes found, in no particular order
+     */
+    List<PartialRecipe> findFieldsByIdIn(Collection<Long> recipeIds, Set<RecipeField> fields);
+}
@@ -0,0 +1,46 @@
+package com.example.recipe.repo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import com.example.recipe.domain.PartialRecipe;
+import com.example.recipe.domain.RecipeField;
+
+/**
+ * JPQL implementation of the loads of some of the fields of Recipes.
+ *
+ * The select list holds the recipe id and the requested columns only. There are few field sets, so their
+ * JPQL strings are translated once each and then reused from the Hibernate query plan cache.
+ */
+public class RecipeFieldsRepositoryImpl implements RecipeFieldsRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PartialRecipe> findFieldsByIdIn(Collection<Long> recipeIds, Set<RecipeField> fields) {
+        StringBuilder jpql = new StringBuilder("select r.recipeId");
+        fields.forEach(field -> jpql.append(", r.").append(field.getAttribute()));
+        jpql.append(" from Recipe r where r.recipeId in :recipeIds");
+
+        List<PartialRecipe> recipes = new ArrayList<>();
+        for (Object[] row : entityManager.createQuery(jpql.toString(), Object[].class)
+                .setParameter("recipeIds", recipeIds)
+                .getResultList()) {
+            Map<RecipeField, Object> values = new EnumMap<>(RecipeField.class);
+            int column = 1;
+            for (RecipeField field : fields) {
+                values.put(field, row[column++]);
+            }
+            recipes.add(new PartialRecipe((Long) row[0], values));
+        }
+        return recipes;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.recipe.repo;
+
+import java.util.Optional;
+
+import com.example.recipe.domain.Recipe;
+
+/**
+ * Loads of a Recipe moving its version, for changes to its ingredients.
+ */
+public interface RecipeLockRepository {
+
+    /**
+     * Lookup a Recipe whose version is incremented when the current transaction commits,
+     * for changes to its ingredients. Must be called within a transaction.
+     *
+     * @param recipeId recipe identifier
+     * @return the Recipe, if found
+     */
+    Optional<Recipe> findForUpdateById(Long recipeId);
+}
@@ -0,0 +1,31 @@
+package com.example.recipe.repo;
+
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import com.example.recipe.domain.Recipe;
+
+/**
+ * JPA implementation of the Recipe loads moving its version.
+ *
+ * The Recipe is found by id, so that it comes from the second-level cache when the cache holds it, and locked
+ * once managed: the version increment is then a single update when the transaction commits. A lock mode passed
+ * to the load itself would bypass the cache and select the recipe.
+ */
+public class RecipeLockRepositoryImpl implements RecipeLockRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Recipe> findForUpdateById(Long recipeId) {
+        Recipe recipe = entityManager.find(Recipe.class, recipeId);
+        if (recipe != null) {
+            entityManager.lock(recipe, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+        return Optional.ofNullable(recipe);
+    }
+}
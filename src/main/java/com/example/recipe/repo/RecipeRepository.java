@@ -1,10 +1,18 @@
 package com.example.recipe.repo;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeSummary;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RestResource;
 
 /**
@@ -12,7 +20,14 @@ import org.springframework.data.rest.core.annotation.RestResource;
  *
  * Created by Vashisth Soni
  */
-public interface RecipeRepository extends PagingAndSortingRepository<Recipe,Long> {
+public interface RecipeRepository extends PagingAndSortingRepository<Recipe,Long>, RecipeSearchRepository,
+        RecipeExportRepository, RecipeLockRepository, RecipeFieldsRepository {
+    /**
+     * JPQL constructor expression of a RecipeSummary from the Recipe aliased r.
+     */
+    String SUMMARY = "com.example.recipe.domain.RecipeSummary("
+            + "r.recipeId, r.name, r.instructions, r.containsMeat, r.isVegan, r.noOfServings)";
+
     @Override
     @RestResource(exported = false)
     <S extends Recipe> S save(S s);
@@ -49,4 +64,46 @@ public interface RecipeRepository extends PagingAndSortingRepository<Recipe,Long
      * @return a Page of any found recipe
      */
     Page<Recipe> findByRecipeId(Long recipeId, Pageable pageable);
+
+    /**
+     * Lookup a Recipe and its Ingredients in one statement.
+     *
+     * @param recipeId recipe identifier
+     * @return the Recipe with its ingredients loaded, if found
+     */
+    @RestResource(exported = false)
+    @EntityGraph(attributePaths = "ingredients")
+    @Query("select r from Recipe r where r.recipeId = :recipeId")
+    Optional<Recipe> findWithIngredientsById(@Param("recipeId") Long recipeId);
+
+    /**
+     * Lookup the version of a Recipe, without loading it.
+     *
+     * @param recipeId recipe identifier
+     * @return the version, if found
+     */
+    @RestResource(exported = false)
+    @Query("select r.version from Recipe r where r.recipeId = :recipeId")
+    Optional<Long> findVersionById(@Param("recipeId") Long recipeId);
+
+    /**
+     * Lookup the columns of a Recipe shown to clients.
+     *
+     * @param recipeId recipe identifier
+     * @return the RecipeSummary, if found
+     */
+    @RestResource(exported = false)
+    @Query("select new " + SUMMARY + " from Recipe r where r.recipeId = :recipeId")
+    Optional<RecipeSummary> findSummaryById(@Param("recipeId") Long recipeId);
+
+    /**
+     * Lookup the columns of several Recipes shown to clients.
+     *
+     * @param recipeIds recipe identifiers
+     * @return the RecipeSummaries found, ordered by recipe id
+     */
+    @RestResource(exported = false)
+    @Query("select new " + SUMMARY + " from Recipe r where r.recipeId in :recipeIds order by r.recipeId")
+    List<RecipeSummary> findSummariesByIdIn(@Param("recipeIds") Collection<Long> recipeIds);
+
 }
\ No newline at end of file
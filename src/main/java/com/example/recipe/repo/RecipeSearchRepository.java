@@ -0,0 +1,23 @@
+package com.example.recipe.repo;
+
+import java.util.List;
+
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.web.RecipeSearchCriteria;
+
+/**
+ * Search queries of the Recipe Repository that are built from the request criteria.
+ */
+public interface RecipeSearchRepository {
+
+    /**
+     * Lookup a slice of the Recipes matching the search criteria, ordered by recipe id,
+     * selecting only the columns shown to clients.
+     *
+     * @param searchCriteria search criteria
+     * @param after only recipes with a greater id are returned, null for the first slice
+     * @param limit maximum number of recipes
+     * @return a List of any found Recipes
+     */
+    List<RecipeSummary> findByCriteria(RecipeSearchCriteria searchCriteria, Long after, int limit);
+}
@@ -0,0 +1,217 @@
+package com.example.recipe.repo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import com.example.recipe.domain.CatalogIngredient;
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.web.RecipeSearchCriteria;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * JPQL implementation of the Recipe search queries.
+ *
+ * Searches only come in a few shapes, a shape being which criteria are set and how many ingredients
+ * they require, rounded up to a power of two so that the shapes stay few whatever the clients send;
+ * the spare required parameters repeat the last id. The JPQL of each shape is written once, with bind
+ * parameters for every value, and reused, so Hibernate translates it to SQL once and then answers from
+ * its query plan cache.
+ *
+ * Only the columns shown to clients are selected, into RecipeSummaries rather than managed entities.
+ *
+ * Ingredient filters are correlated EXISTS / NOT EXISTS subqueries rather than joins,
+ * so they neither multiply the recipe rows nor let an excluded ingredient slip through.
+ * They compare the ids of the catalog entries of the names, looked up first: a required name missing
+ * from the catalog matches no recipe, and an excluded one excludes none.
+ */
+public class RecipeSearchRepositoryImpl implements RecipeSearchRepository {
+    static final String PLANS_METRIC = "recipe.search.query.plans";
+    private static final String CATALOG_QUERY = "select c from CatalogIngredient c where c.name in :names";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<Shape, String> queries = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Construct RecipeSearchRepositoryImpl
+     *
+     * @param meterRegistry registry of the query cache hit and miss counters
+     */
+    @Autowired
+    public RecipeSearchRepositoryImpl(MeterRegistry meterRegistry) {
+        this.hits = meterRegistry.counter(PLANS_METRIC, "result", "hit");
+        this.misses = meterRegistry.counter(PLANS_METRIC, "result", "miss");
+        meterRegistry.gaugeMapSize(PLANS_METRIC + ".size", Tags.empty(), queries);
+    }
+
+    @Override
+    public List<RecipeSummary> findByCriteria(RecipeSearchCriteria searchCriteria, Long after, int limit) {
+        Set<String> requiredNames = normalize(searchCriteria.requiredIngredients());
+        Set<String> excludedNames = normalize(searchCriteria.excludedIngredients());
+        Map<String, Integer> catalog = catalogIds(requiredNames, excludedNames);
+        if (!catalog.keySet().containsAll(requiredNames)) {
+            return Collections.emptyList();
+        }
+        List<Integer> required = new ArrayList<>();
+        requiredNames.forEach(name -> required.add(catalog.get(name)));
+        List<Integer> excluded = new ArrayList<>();
+        excludedNames.stream()
+                .filter(catalog::containsKey)
+                .forEach(name -> excluded.add(catalog.get(name)));
+        Shape shape = new Shape(after != null, searchCriteria.isVegetarian(), searchCriteria.getServes() != null,
+                slots(required.size()), !excluded.isEmpty(), searchCriteria.getIncludeInstructions() != null);
+
+        String jpql = queries.get(shape);
+        if (jpql == null) {
+            jpql = queries.computeIfAbsent(shape, Shape::toJpql);
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        TypedQuery<RecipeSummary> query = entityManager.createQuery(jpql, RecipeSummary.class);
+        if (shape.after) {
+            query.setParameter("after", after);
+        }
+        if (shape.serves) {
+            query.setParameter("serves", searchCriteria.getServes().intValue());
+        }
+        for (int i = 0; i < shape.required; i++) {
+            query.setParameter("required" + i, required.get(Math.min(i, required.size() - 1)));
+        }
+        if (shape.excluded) {
+            query.setParameter("excluded", excluded);
+        }
+        if (shape.instructions) {
+            query.setParameter("instructions", "%" + searchCriteria.getIncludeInstructions() + "%");
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Lookup the catalog ids of the ingredient names of a search, with one query.
+     *
+     * @param required normalized names the recipes must contain
+     * @param excluded normalized names the recipes must not contain
+     * @return the id of every name found in the catalog
+     */
+    private Map<String, Integer> catalogIds(Set<String> required, Set<String> excluded) {
+        Set<String> names = new HashSet<>(required);
+        names.addAll(excluded);
+        if (names.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        entityManager.createQuery(CATALOG_QUERY, CatalogIngredient.class)
+                .setParameter("names", names)
+                .setHint("org.hibernate.cacheable", true)
+                .setHint("org.hibernate.cacheRegion", "catalog-queries")
+                .getResultList()
+                .forEach(entry -> ids.put(entry.getName(), entry.getCatalogIngredientId()));
+        return ids;
+    }
+
+    /**
+     * @param count number of required ingredients
+     * @return the number of required parameters of the shape, the power of two at or above the count
+     */
+    static int slots(int count) {
+        return count <= 1 ? count : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    private static Set<String> normalize(Collection<String> names) {
+        Set<String> normalized = new LinkedHashSet<>();
+        names.forEach(name -> normalized.add(CatalogIngredient.normalize(name)));
+        return normalized;
+    }
+
+    /**
+     * Which criteria of a search are set, regardless of their values.
+     */
+    private static final class Shape {
+        private final boolean after;
+        private final boolean vegetarian;
+        private final boolean serves;
+        private final int required;
+        private final boolean excluded;
+        private final boolean instructions;
+
+        private Shape(boolean after, boolean vegetarian, boolean serves, int required, boolean excluded,
+                      boolean instructions) {
+            this.after = after;
+            this.vegetarian = vegetarian;
+            this.serves = serves;
+            this.required = required;
+            this.excluded = excluded;
+            this.instructions = instructions;
+        }
+
+        private String toJpql() {
+            List<String> predicates = new ArrayList<>();
+            if (after) {
+                predicates.add("r.recipeId > :after");
+            }
+            if (vegetarian) {
+                predicates.add("r.isVegan = true");
+            }
+            if (serves) {
+                predicates.add("r.noOfServings = :serves");
+            }
+            for (int i = 0; i < required; i++) {
+                predicates.add("exists (select i.ingredientId from Ingredient i where i.recipe = r "
+                        + "and i.catalogIngredient.catalogIngredientId = :required" + i + ")");
+            }
+            if (excluded) {
+                predicates.add("not exists (select i.ingredientId from Ingredient i where i.recipe = r "
+                        + "and i.catalogIngredient.catalogIngredientId in :excluded)");
+            }
+            if (instructions) {
+                predicates.add("r.instructions like :instructions");
+            }
+            return "select new " + RecipeRepository.SUMMARY + " from Recipe r"
+                    + (predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates))
+                    + " order by r.recipeId";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Shape)) {
+                return false;
+            }
+            Shape shape = (Shape) o;
+            return after == shape.after && vegetarian == shape.vegetarian && serves == shape.serves
+                    && required == shape.required && excluded == shape.excluded && instructions == shape.instructions;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = required;
+            for (boolean set : new boolean[]{after, vegetarian, serves, excluded, instructions}) {
+                result = 31 * result + (set ? 1 : 0);
+            }
+            return result;
+        }
+    }
+}
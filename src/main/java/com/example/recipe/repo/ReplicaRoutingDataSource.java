@@ -0,0 +1,100 @@
+package com.example.recipe.repo;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Route the connections of read-only transactions to a replica, and all others to the primary.
+ *
+ * The route is chosen when the physical connection is fetched, so this data source must sit behind a
+ * LazyConnectionDataSourceProxy: the transaction is then marked read-only before its first statement.
+ * Connections outside of a transaction also go to the primary. Replicas trail the primary; for a
+ * configurable window after a client's read-write transaction commits, that client's reads stay on the
+ * primary so that it sees its own writes. The other clients keep reading from the replica.
+ * Reads whose results outlive the request, such as cached ones, are sent to the primary with readPrimary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static final int MAX_CLIENTS = 100000;
+    private static final Object NO_CLIENT = "";
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    /**
+     * Target of a connection.
+     */
+    enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final Supplier<Object> client;
+    private final Cache<Object, Boolean> recentWriters;
+
+    /**
+     * Construct ReplicaRoutingDataSource
+     *
+     * @param primary data source of the writes
+     * @param replica data source of the read-only transactions
+     * @param lagWindowMillis milliseconds after a client's write commits during which its reads stay on the primary
+     * @param client key of the client of the current thread, null when there is none
+     */
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, long lagWindowMillis,
+                                    Supplier<Object> client) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Route.PRIMARY, primary);
+        targets.put(Route.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.client = client;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterWrite(lagWindowMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Run reads against the primary, whether or not the current transaction is read-only.
+     * The transaction must not have fetched its connection yet, or it keeps the connection it has.
+     *
+     * @param reads the reads
+     * @param <T> type of the result
+     * @return the result of the reads
+     */
+    public static <T> T readPrimary(Supplier<T> reads) {
+        Boolean previous = PRIMARY_READS.get();
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_READS.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Object current = client.get();
+        Object writer = current == null ? NO_CLIENT : current;
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        recentWriters.put(writer, Boolean.TRUE);
+                    }
+                });
+            }
+            return Route.PRIMARY;
+        }
+        return PRIMARY_READS.get() != null || recentWriters.getIfPresent(writer) != null ? Route.PRIMARY : Route.REPLICA;
+    }
+}
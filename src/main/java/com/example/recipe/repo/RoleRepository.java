@@ -2,10 +2,15 @@ package com.example.recipe.repo;
 
 import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
 import com.example.recipe.domain.Role;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "security-queries")})
     Optional<Role> findByRoleName(String name);
 }
\ No newline at end of file
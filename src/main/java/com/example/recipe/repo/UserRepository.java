@@ -2,9 +2,12 @@ package com.example.recipe.repo;
 
 import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
 import com.example.recipe.domain.User;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
 /**
@@ -12,5 +15,7 @@ import org.springframework.data.rest.core.annotation.RepositoryRestResource;
  */
 @RepositoryRestResource(exported = false)
 public interface UserRepository extends JpaRepository<User, Integer> {
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "security-queries")})
     Optional<User> findByUsername(String userName);
 }
\ No newline at end of file
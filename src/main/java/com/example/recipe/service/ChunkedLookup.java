@@ -0,0 +1,57 @@
+package com.example.recipe.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Load entities by id with IN queries of at most 500 ids, so that a long id list does not make an oversized
+ * statement. Hibernate caches a query plan per length of the IN list, so every chunk is padded to a power of
+ * two ids, or to 500, by repeating its last id: the plans of the lookups are then a handful instead of one per
+ * list length. Hibernate 5.2.16 has no hibernate.query.in_clause_parameter_padding setting to do it.
+ */
+final class ChunkedLookup {
+    static final int CHUNK_SIZE = 500;
+
+    private ChunkedLookup() {
+    }
+
+    /**
+     * Run a query per chunk of ids and collect the results by id.
+     *
+     * @param ids identifiers
+     * @param query loads the entities of a chunk of ids
+     * @param id identifier of a loaded entity
+     * @param <T> loaded type
+     * @return the entities found, by id
+     */
+    static <T> Map<Long, T> byId(Collection<Long> ids, Function<List<Long>, ? extends Iterable<T>> query,
+                                 Function<T, Long> id) {
+        List<Long> all = new ArrayList<>(ids);
+        Map<Long, T> found = new HashMap<>();
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            for (T loaded : query.apply(pad(all.subList(from, Math.min(from + CHUNK_SIZE, all.size()))))) {
+                found.put(id.apply(loaded), loaded);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param chunk ids of a chunk
+     * @return the ids, followed by copies of the last one up to the power of two at or above their count,
+     *         or up to CHUNK_SIZE
+     */
+    static List<Long> pad(List<Long> chunk) {
+        int size = chunk.size() <= 1 ? chunk.size() : Math.min(Integer.highestOneBit(chunk.size() - 1) << 1, CHUNK_SIZE);
+        List<Long> padded = new ArrayList<>(size);
+        padded.addAll(chunk);
+        while (padded.size() < size) {
+            padded.add(chunk.get(chunk.size() - 1));
+        }
+        return padded;
+    }
+}
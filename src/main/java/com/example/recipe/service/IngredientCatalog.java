@@ -0,0 +1,138 @@
+package com.example.recipe.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.example.recipe.domain.CatalogIngredient;
+import com.example.recipe.repo.CatalogIngredientRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The ingredient catalog: maps the ingredient names entered by clients to their catalog entries,
+ * adding the names not seen before.
+ *
+ * New entries are inserted and committed in a transaction of their own, so that two requests adding
+ * the same name do not fail each other: the loser of the unique constraint reads the winner's entry.
+ * The entries read back must carry the very names inserted; a constraint violation on any other name,
+ * as a unique key comparing names more loosely than CatalogIngredient.normalize would raise, is rethrown.
+ * Callers resolve their names before starting their own transaction, so that a request never holds
+ * a second connection, or the lock of a recipe, while the catalog is written.
+ */
+@Service
+public class IngredientCatalog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngredientCatalog.class);
+    private final CatalogIngredientRepository catalogIngredientRepository;
+    private final TransactionTemplate newTransaction;
+
+    /**
+     * Construct IngredientCatalog
+     *
+     * @param catalogIngredientRepository Catalog Ingredient Repository
+     * @param transactionManager transaction manager of the catalog inserts
+     */
+    @Autowired
+    public IngredientCatalog(CatalogIngredientRepository catalogIngredientRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.catalogIngredientRepository = catalogIngredientRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Get the catalog entry of an ingredient name, adding it to the catalog if needed.
+     *
+     * @param name ingredient name as entered
+     * @return the entry, null for a null name
+     */
+    public CatalogIngredient resolve(String name) {
+        return name == null ? null : resolveAll(Collections.singleton(name)).get(name);
+    }
+
+    /**
+     * Get the catalog entries of ingredient names, adding the missing ones in one transaction.
+     *
+     * @param names ingredient names as entered
+     * @return the entry of every non-null name
+     */
+    public Map<String, CatalogIngredient> resolveAll(Collection<String> names) {
+        Map<String, String> normalized = new HashMap<>();
+        for (String name : names) {
+            if (name != null) {
+                normalized.put(name, CatalogIngredient.normalize(name));
+            }
+        }
+        if (normalized.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, CatalogIngredient> entries = new HashMap<>();
+        catalogIngredientRepository.findByNameIn(new HashSet<>(normalized.values()))
+                .forEach(entry -> entries.put(entry.getName(), entry));
+        Map<String, String> missing = new HashMap<>();
+        normalized.forEach((name, key) -> {
+            if (!entries.containsKey(key)) {
+                missing.putIfAbsent(key, CatalogIngredient.collapseWhitespace(name));
+            }
+        });
+        if (!missing.isEmpty()) {
+            entries.putAll(add(missing));
+        }
+
+        Map<String, CatalogIngredient> resolved = new HashMap<>();
+        normalized.forEach((name, key) -> resolved.put(name, entries.get(key)));
+        return resolved;
+    }
+
+    /**
+     * Insert new catalog entries, reading back those another transaction inserted first.
+     *
+     * @param names display name of every normalized name
+     * @return the entry of every normalized name
+     */
+    private Map<String, CatalogIngredient> add(Map<String, String> names) {
+        Map<String, CatalogIngredient> added = new HashMap<>();
+        Set<String> missing = new HashSet<>(names.keySet());
+        while (!missing.isEmpty()) {
+            try {
+                added.putAll(newTransaction.execute(status -> {
+                    List<CatalogIngredient> saved = catalogIngredientRepository.saveAll(missing.stream()
+                            .map(name -> new CatalogIngredient(name, names.get(name)))
+                            .collect(Collectors.toList()));
+                    catalogIngredientRepository.flush();
+                    return byName(saved);
+                }));
+                return added;
+            } catch (DataIntegrityViolationException e) {
+                Map<String, CatalogIngredient> existing = newTransaction.execute(status ->
+                        byName(catalogIngredientRepository.findByNameIn(missing)));
+                existing.keySet().retainAll(missing);
+                if (existing.isEmpty()) {
+                    throw e;
+                }
+                LOGGER.info("Ingredients {} were added to the catalog concurrently", existing.keySet());
+                added.putAll(existing);
+                missing.removeAll(existing.keySet());
+            }
+        }
+        return added;
+    }
+
+    private static Map<String, CatalogIngredient> byName(List<CatalogIngredient> entries) {
+        return entries.stream().collect(Collectors.toMap(CatalogIngredient::getName, Function.identity()));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.recipe.service;
+
+import lombok.Getter;
+
+/**
+ * An ingredient name completing a prefix, and the number of recipes using it.
+ */
+@Getter
+public class IngredientCompletion {
+
+    private final String name;
+
+    private final int recipes;
+
+    /**
+     * Constructor to fully initialize the IngredientCompletion
+     *
+     * @param name ingredient name, its spelling used by the most recipes
+     * @param recipes number of recipes using the ingredient
+     */
+    public IngredientCompletion(String name, int recipes) {
+        this.name = name;
+        this.recipes = recipes;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.recipe.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.example.recipe.domain.CatalogIngredient;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Trie of the ingredient names, to complete the prefix typed by a client.
+ *
+ * The trie is walked by the normalized names, so spellings of one catalog name count together; the
+ * node of a name keeps how many recipes use each of its spellings, and completes to the most used one.
+ * Every node keeps the most used names below it, ordered by the number of recipes using them,
+ * so a completion is a walk down the prefix returning a precomputed list. Counts change along
+ * the path of a name only, and the lists are recomputed from the children on that path.
+ * The trie follows the RecipeIndexEvents of the RecipeSearchIndex.
+ */
+@Component
+public class IngredientNameIndex {
+    static final int MAX_COMPLETIONS = 10;
+
+    private static final Comparator<IngredientCompletion> MOST_USED =
+            Comparator.comparingInt(IngredientCompletion::getRecipes).reversed()
+                    .thenComparing(IngredientCompletion::getName);
+
+    private final RecipeSearchIndex recipeSearchIndex;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+
+    /**
+     * Construct IngredientNameIndex
+     *
+     * @param recipeSearchIndex Recipe Search Index, the source of the ingredient names
+     */
+    @Autowired
+    public IngredientNameIndex(RecipeSearchIndex recipeSearchIndex) {
+        this.recipeSearchIndex = recipeSearchIndex;
+    }
+
+    /**
+     * Follow a change of the search index.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onIndexChange(RecipeIndexEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isRebuild()) {
+                Map<String, Map<String, Integer>> counts = new HashMap<>();
+                for (RecipeDocument document : recipeSearchIndex.documents()) {
+                    document.names().forEach(name -> counts.computeIfAbsent(name, key -> new HashMap<>())
+                            .merge(document.displayName(name), 1, Integer::sum));
+                }
+                root = new Node();
+                counts.forEach((name, spellings) ->
+                        spellings.forEach((displayName, count) -> add(name, displayName, count)));
+                return;
+            }
+            RecipeDocument previous = event.getPrevious();
+            RecipeDocument current = event.getCurrent();
+            for (String name : names(previous)) {
+                String displayName = previous.displayName(name);
+                if (current == null || !displayName.equals(current.displayName(name))) {
+                    add(name, displayName, -1);
+                }
+            }
+            for (String name : names(current)) {
+                String displayName = current.displayName(name);
+                if (previous == null || !displayName.equals(previous.displayName(name))) {
+                    add(name, displayName, 1);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Complete a prefix with the ingredient names used by the most recipes.
+     *
+     * @param prefix start of a normalized ingredient name, matched case-insensitively; not folded to
+     *               the singular, as it may end in the middle of a word
+     * @param limit maximum number of names, at most 10
+     * @return the completions, the most used first, by their most used spelling
+     */
+    public List<IngredientCompletion> complete(String prefix, int limit) {
+        String key = CatalogIngredient.foldCase(prefix);
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return Collections.emptyList();
+            }
+            List<IngredientCompletion> top = Arrays.asList(node.top);
+            return top.size() > limit ? top.subList(0, limit) : top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Set<String> names(RecipeDocument document) {
+        return document == null ? Collections.emptySet() : document.names();
+    }
+
+    /**
+     * Change the number of recipes using a spelling of a name, and the completions along its path.
+     */
+    private void add(String name, String displayName, int delta) {
+        Node[] path = new Node[name.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < name.length(); i++) {
+            Node child = path[i].child(name.charAt(i));
+            if (child == null) {
+                if (delta < 0) {
+                    return;
+                }
+                child = path[i].addChild(name.charAt(i));
+            }
+            path[i + 1] = child;
+        }
+        path[name.length()].count(displayName, delta);
+        for (int i = name.length(); i >= 0; i--) {
+            Node node = path[i];
+            if (i > 0 && node.count == 0 && node.labels.length == 0) {
+                path[i - 1].removeChild(name.charAt(i - 1));
+            } else {
+                node.updateTop();
+            }
+        }
+    }
+
+    /**
+     * A node of the trie, its children kept in arrays sorted by their label.
+     */
+    private static final class Node {
+        private static final IngredientCompletion[] NONE = new IngredientCompletion[0];
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private Map<String, Integer> spellings;
+        private String name;
+        private int count;
+        private IngredientCompletion[] top = NONE;
+
+        /**
+         * Change the number of recipes using a spelling of the name ending here, showing the most used.
+         */
+        private void count(String displayName, int delta) {
+            if (spellings == null) {
+                spellings = new HashMap<>();
+            }
+            if (delta > 0 || spellings.containsKey(displayName)) {
+                spellings.merge(displayName, delta, (current, change) -> current + change > 0 ? current + change : null);
+            }
+            count = 0;
+            name = null;
+            for (Map.Entry<String, Integer> spelling : spellings.entrySet()) {
+                count += spelling.getValue();
+                int used = name == null ? 0 : spellings.get(name);
+                if (spelling.getValue() > used || spelling.getValue() == used && spelling.getKey().compareTo(name) < 0) {
+                    name = spelling.getKey();
+                }
+            }
+            if (spellings.isEmpty()) {
+                spellings = null;
+            }
+        }
+
+        private Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node addChild(char label) {
+            int index = -Arrays.binarySearch(labels, label) - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newLabels[index] = label;
+            newChildren[index] = new Node();
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[index];
+        }
+
+        private void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        /**
+         * Merge the completions of the children with the name ending here.
+         */
+        private void updateTop() {
+            List<IngredientCompletion> candidates = new ArrayList<>();
+            if (name != null) {
+                candidates.add(new IngredientCompletion(name, count));
+            }
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(MOST_USED);
+            top = candidates.subList(0, Math.min(MAX_COMPLETIONS, candidates.size())).toArray(NONE);
+        }
+    }
+}
@@ -1,8 +1,20 @@
 package com.example.recipe.service;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
+import com.example.recipe.domain.CatalogIngredient;
 import com.example.recipe.domain.Ingredient;
 import com.example.recipe.domain.Recipe;
 import com.example.recipe.repo.IngredientRepository;
@@ -12,13 +24,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Ingredient Service
  *
+ * The writes of new ingredient names resolve them in the catalog first, and only then start the
+ * transaction locking the recipe: catalog inserts never wait on, or hold, a recipe lock.
+ *
  * Created by Vashisth Soni.
  */
 @Service
@@ -26,17 +47,35 @@ public class IngredientService {
     private static final Logger LOGGER = LoggerFactory.getLogger(IngredientService.class);
     private final IngredientRepository ingredientRepository;
     private final RecipeRepository recipeRepository;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final IngredientNameIndex ingredientNameIndex;
+    private final IngredientCatalog ingredientCatalog;
+    private final RecipeResponseCache recipeResponseCache;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Construct IngredientService
      *
      * @param ingredientRepository Ingredient Repository
      * @param recipeRepository Recipe Repository
+     * @param recipeSearchIndex Recipe Search Index
+     * @param ingredientNameIndex Ingredient Name Index
+     * @param ingredientCatalog Ingredient Catalog
+     * @param recipeResponseCache Recipe Response Cache
+     * @param transactionManager transaction manager of the writes resolving ingredient names
      */
     @Autowired
-    public IngredientService(IngredientRepository ingredientRepository, RecipeRepository recipeRepository) {
+    public IngredientService(IngredientRepository ingredientRepository, RecipeRepository recipeRepository,
+                             RecipeSearchIndex recipeSearchIndex, IngredientNameIndex ingredientNameIndex,
+                             IngredientCatalog ingredientCatalog, RecipeResponseCache recipeResponseCache,
+                             PlatformTransactionManager transactionManager) {
         this.ingredientRepository = ingredientRepository;
         this.recipeRepository = recipeRepository;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.ingredientNameIndex = ingredientNameIndex;
+        this.ingredientCatalog = ingredientCatalog;
+        this.recipeResponseCache = recipeResponseCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -49,7 +88,128 @@ public class IngredientService {
      */
     public void createNew(Long recipeId, String name, String measurement) throws NoSuchElementException {
         LOGGER.info("Create Ingredient for Recipe {} ", recipeId);
-        ingredientRepository.save(new Ingredient(name, measurement, verifyRecipe(recipeId)));
+        checkRecipe(recipeId);
+        CatalogIngredient catalogIngredient = ingredientCatalog.resolve(name);
+        transactionTemplate.execute(status -> {
+            Ingredient ingredient = new Ingredient(name, measurement, lockRecipe(recipeId));
+            ingredient.setCatalogIngredient(catalogIngredient);
+            Ingredient saved = ingredientRepository.save(ingredient);
+            AfterCommit.run(() -> recipeSearchIndex.putIngredient(saved));
+            return saved;
+        });
+    }
+
+    /**
+     * Create several Ingredients of a recipe in one transaction: the recipe is verified once,
+     * the names are resolved in the catalog with one lookup, and the inserts are sent in JDBC batches.
+     *
+     * @param recipeId recipe identifier
+     * @param ingredientDtos names and measurements
+     * @return the created Ingredients
+     * @throws NoSuchElementException if no Recipe found.
+     */
+    public List<Ingredient> createAll(Long recipeId, List<IngredientDto> ingredientDtos) throws NoSuchElementException {
+        LOGGER.info("Create {} Ingredients for Recipe {}", ingredientDtos.size(), recipeId);
+        checkRecipe(recipeId);
+        Map<String, CatalogIngredient> catalog = resolveNames(ingredientDtos);
+        return transactionTemplate.execute(status -> {
+            Recipe recipe = lockRecipe(recipeId);
+            List<Ingredient> ingredients = new ArrayList<>(ingredientDtos.size());
+            for (IngredientDto ingredientDto : ingredientDtos) {
+                Ingredient ingredient = new Ingredient(ingredientDto.getName(), ingredientDto.getMeasurement(), recipe);
+                ingredient.setCatalogIngredient(catalog.get(ingredientDto.getName()));
+                ingredients.add(ingredient);
+            }
+            List<Ingredient> saved = ingredientRepository.saveAll(ingredients);
+            AfterCommit.run(() -> recipeSearchIndex.changeIngredients(recipeId, saved, Collections.emptyList()));
+            return saved;
+        });
+    }
+
+    /**
+     * Replace the ingredient list of a recipe in one transaction, writing only the difference:
+     * an ingredient of the new list takes over a current one with the same catalog name, which is
+     * updated only if its name or measurement changed; the others are inserted, and the current
+     * ingredients left over are deleted.
+     *
+     * @param recipeId recipe identifier
+     * @param ingredientDtos the new ingredient list
+     * @param version version of the ingredients the client last read, null to overwrite any version
+     * @return the Recipe, at the version of its new ingredient list once committed
+     * @throws NoSuchElementException if no Recipe found.
+     * @throws OptimisticLockingFailureException if the ingredients are no longer at the version
+     */
+    public Recipe replaceAll(Long recipeId, List<IngredientDto> ingredientDtos, Long version) throws NoSuchElementException {
+        LOGGER.info("Replace the Ingredients of Recipe {} with {}", recipeId, ingredientDtos.size());
+        checkRecipe(recipeId);
+        Map<String, CatalogIngredient> catalog = resolveNames(ingredientDtos);
+        return transactionTemplate.execute(status -> replaceAll(recipeId, ingredientDtos, version, catalog));
+    }
+
+    private Recipe replaceAll(Long recipeId, List<IngredientDto> ingredientDtos, Long version,
+                              Map<String, CatalogIngredient> catalog) {
+        Recipe recipe = lockRecipe(recipeId);
+        if (version != null && !version.equals(recipe.getVersion())) {
+            throw new OptimisticLockingFailureException("Ingredients of recipe " + recipeId + " are at another version");
+        }
+        Map<String, Deque<Ingredient>> unmatched = new HashMap<>();
+        for (Ingredient ingredient : ingredientRepository.findByRecipe(recipe)) {
+            unmatched.computeIfAbsent(catalogName(ingredient.getName()), name -> new ArrayDeque<>()).add(ingredient);
+        }
+
+        List<Ingredient> put = new ArrayList<>();
+        for (IngredientDto ingredientDto : ingredientDtos) {
+            Deque<Ingredient> sameName = unmatched.get(catalogName(ingredientDto.getName()));
+            Ingredient ingredient = sameName == null ? null : sameName.poll();
+            if (ingredient == null) {
+                ingredient = new Ingredient(ingredientDto.getName(), ingredientDto.getMeasurement(), recipe);
+                ingredient.setCatalogIngredient(catalog.get(ingredientDto.getName()));
+                put.add(ingredient);
+            } else if (!Objects.equals(ingredient.getName(), ingredientDto.getName())
+                    || !Objects.equals(ingredient.getMeasurement(), ingredientDto.getMeasurement())) {
+                ingredient.setName(ingredientDto.getName());
+                ingredient.setMeasurement(ingredientDto.getMeasurement());
+                put.add(ingredient);
+            }
+        }
+        List<Ingredient> removed = new ArrayList<>();
+        unmatched.values().forEach(removed::addAll);
+
+        ingredientRepository.deleteAll(removed);
+        List<Ingredient> saved = ingredientRepository.saveAll(put);
+        AfterCommit.run(() -> recipeSearchIndex.changeIngredients(recipeId, saved, removed));
+        return recipe;
+    }
+
+    /**
+     * Delete several Ingredients of a recipe in one transaction, or none if one of them is not found.
+     *
+     * @param recipeId recipe identifier
+     * @param ingredientIds ingredient identifiers
+     * @throws NoSuchElementException if no Recipe, or not all the Ingredients of the recipe, found.
+     */
+    @Transactional
+    public void deleteAll(Long recipeId, Collection<Long> ingredientIds) throws NoSuchElementException {
+        LOGGER.info("Delete {} Ingredients for recipe {}", ingredientIds.size(), recipeId);
+        Set<Long> ids = new HashSet<>(ingredientIds);
+        List<Ingredient> ingredients = ingredientRepository.findByRecipeAndIngredientIdIn(lockRecipe(recipeId), ids);
+        if (ingredients.size() < ids.size()) {
+            ingredients.forEach(ingredient -> ids.remove(ingredient.getIngredientId()));
+            throw new NoSuchElementException("Recipe " + recipeId + " has no ingredients " + ids);
+        }
+        ingredientRepository.deleteAll(ingredients);
+        AfterCommit.run(() -> recipeSearchIndex.changeIngredients(recipeId, Collections.emptyList(), ingredients));
+    }
+
+    /**
+     * Complete the start of an ingredient name.
+     *
+     * @param prefix start of an ingredient name
+     * @param size maximum number of names
+     * @return the ingredient names used by the most recipes first
+     */
+    public List<IngredientCompletion> autocomplete(String prefix, int size) {
+        return ingredientNameIndex.complete(prefix, size);
     }
 
     /**
@@ -58,10 +218,44 @@ public class IngredientService {
      * @param ingredientId ingredientId identifier
      * @return Ingredient
      */
+    @Transactional(readOnly = true)
     public Optional<Ingredient> lookupIngredientById(Long ingredientId)  {
         return ingredientRepository.findById(ingredientId);
     }
 
+    /**
+     * Get several ingredients, with one IN query per 500 ids.
+     *
+     * @param ingredientIds ingredient identifiers
+     * @return the Ingredients found, by id
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Ingredient> lookupIngredientsByIds(Collection<Long> ingredientIds) {
+        return ChunkedLookup.byId(ingredientIds, ingredientRepository::findAllById, Ingredient::getIngredientId);
+    }
+
+    /**
+     * Get the version of an ingredient, without loading it.
+     *
+     * @param ingredientId ingredient identifier
+     * @return the version
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> lookupVersion(Long ingredientId) {
+        return ingredientRepository.findVersionById(ingredientId);
+    }
+
+    /**
+     * Get the version of the ingredients of a recipe, the version of the recipe, without loading them.
+     *
+     * @param recipeId recipe identifier
+     * @return the version
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> lookupIngredientsVersion(Long recipeId) {
+        return recipeRepository.findVersionById(recipeId);
+    }
+
     /**
      * Get a page of recipe for an ingredient.
      *
@@ -70,9 +264,31 @@ public class IngredientService {
      * @return Page of Ingredients
      * @throws NoSuchElementException if no Ingredient found.
      */
+    @Transactional(readOnly = true)
     public Page<Ingredient> lookupIngredients(Long recipeId, Pageable pageable) throws NoSuchElementException  {
         LOGGER.info("Lookup Ingredient for recipe {}", recipeId);
-        return ingredientRepository.findByRecipe(verifyRecipe(recipeId), pageable);
+        if (!recipeRepository.existsById(recipeId)) {
+            throw new NoSuchElementException("Recipe does not exist " + recipeId);
+        }
+        return ingredientRepository.findByRecipeId(recipeId, pageable);
+    }
+
+    /**
+     * Get the ingredients of a recipe following an ingredient, in id order, without counting them.
+     *
+     * @param recipeId recipe identifier
+     * @param after ingredient id to continue after, 0 for the first slice
+     * @param size maximum number of ingredients
+     * @return Slice of Ingredients
+     * @throws NoSuchElementException if no Recipe found.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Ingredient> lookupIngredients(Long recipeId, long after, int size) throws NoSuchElementException {
+        LOGGER.info("Lookup Ingredient for recipe {} after {}", recipeId, after);
+        if (!recipeRepository.existsById(recipeId)) {
+            throw new NoSuchElementException("Recipe does not exist " + recipeId);
+        }
+        return ingredientRepository.findByRecipeIdAfter(recipeId, after, PageRequest.of(0, size));
     }
 
     /**
@@ -80,16 +296,31 @@ public class IngredientService {
      *
      * @param ingredientId recipe identifier
      * @param ingredientDto name of an ingredient
+     * @param version version the client last read, null to overwrite any version
      * @return Ingredient Ingredient Domain Object
      * @throws NoSuchElementException if no Ingredient found.
+     * @throws OptimisticLockingFailureException if the ingredient is no longer at the version
      */
-    public Ingredient update(Long ingredientId, IngredientDto ingredientDto) throws NoSuchElementException {
+    public Ingredient update(Long ingredientId, IngredientDto ingredientDto, Long version) throws NoSuchElementException {
         LOGGER.info("Update ingredient {}", ingredientId);
+        CatalogIngredient catalogIngredient = ingredientCatalog.resolve(ingredientDto.getName());
+        return transactionTemplate.execute(status -> update(ingredientId, ingredientDto, version, catalogIngredient));
+    }
+
+    private Ingredient update(Long ingredientId, IngredientDto ingredientDto, Long version,
+                              CatalogIngredient catalogIngredient) {
         Optional<Ingredient> ingredient = Optional.ofNullable(ingredientRepository.findById(ingredientId).orElseThrow(() ->
                 new NoSuchElementException("No such ingredient present " + ingredientId)));
+        if (version != null && !version.equals(ingredient.get().getVersion())) {
+            throw new OptimisticLockingFailureException("Ingredient " + ingredientId + " is at another version");
+        }
+        lockRecipe(ingredient.get().getRecipe().getRecipeId());
         ingredient.get().setName(ingredientDto.getName());
+        ingredient.get().setCatalogIngredient(catalogIngredient);
         ingredient.get().setMeasurement(ingredientDto.getMeasurement());
-        return ingredientRepository.save(ingredient.get());
+        Ingredient saved = ingredientRepository.save(ingredient.get());
+        AfterCommit.run(() -> recipeSearchIndex.putIngredient(saved));
+        return saved;
     }
 
     /**
@@ -99,10 +330,14 @@ public class IngredientService {
      * @param ingredientId customer identifier
      * @throws NoSuchElementException if no Ingredient found.
      */
+    @Transactional
     public void delete(Long recipeId, Long ingredientId) throws NoSuchElementException {
         LOGGER.info("Delete Ingredient for recipe {} and customer {}", recipeId, ingredientId);
-        Ingredient ingredient = verifyRecipeAndIngredient(recipeId, ingredientId);
+        Ingredient ingredient = ingredientRepository.findByRecipeAndIngredientId(lockRecipe(recipeId), ingredientId)
+                .orElseThrow(() -> new NoSuchElementException("Recipe-Ingredient pair for request("
+                        + recipeId + " for ingredient" + ingredientId));
         ingredientRepository.delete(ingredient);
+        AfterCommit.run(() -> recipeSearchIndex.removeIngredient(ingredient));
     }
 
     /**
@@ -111,11 +346,14 @@ public class IngredientService {
      * @param ingredientId customer identifier
      * @throws NoSuchElementException if no Ingredient found.
      */
+    @Transactional
     public void deleteById(Long ingredientId) throws NoSuchElementException {
         LOGGER.info("Delete Ingredient {}", ingredientId);
         Optional<Ingredient> ingredient = Optional.ofNullable(ingredientRepository.findById(ingredientId).orElseThrow(() ->
                 new NoSuchElementException("No such ingredient present " + ingredientId)));
+        lockRecipe(ingredient.get().getRecipe().getRecipeId());
         ingredientRepository.delete(ingredient.get());
+        AfterCommit.run(() -> recipeSearchIndex.removeIngredient(ingredient.get()));
     }
 
     /**
@@ -126,21 +364,69 @@ public class IngredientService {
      * @throws NoSuchElementException if no Recipe found.
      */
     public Recipe verifyRecipe(Long recipeId) throws NoSuchElementException {
+        checkRecipe(recipeId);
         return recipeRepository.findById(recipeId).orElseThrow(() ->
                 new NoSuchElementException("Recipe does not exist " + recipeId)
         );
     }
 
+    /**
+     * Answer for a missing recipe before any lock is taken, without loading it. The search index only
+     * holds the recipes this instance has indexed, so the recipes it misses are looked up in the database:
+     * they may have been created by another instance, or not be indexed yet.
+     *
+     * @param recipeId recipe id
+     * @throws NoSuchElementException if no Recipe found.
+     */
+    private void checkRecipe(Long recipeId) throws NoSuchElementException {
+        if (recipeSearchIndex.isMissing(recipeId) && !recipeRepository.existsById(recipeId)) {
+            throw new NoSuchElementException("Recipe does not exist " + recipeId);
+        }
+    }
+
+    /**
+     * Load a recipe whose version moves with the current change of its ingredients,
+     * from the second-level cache when it holds the recipe. Its cached responses are dropped once the
+     * change commits.
+     *
+     * @param recipeId recipe id
+     * @return the Recipe
+     * @throws NoSuchElementException if no Recipe found.
+     */
+    private Recipe lockRecipe(Long recipeId) throws NoSuchElementException {
+        Recipe recipe = recipeRepository.findForUpdateById(recipeId).orElseThrow(() ->
+                new NoSuchElementException("Recipe does not exist " + recipeId)
+        );
+        AfterCommit.run(() -> recipeResponseCache.invalidate(recipeId));
+        return recipe;
+    }
+
+    /**
+     * Get the catalog entries of the names of new ingredients, with one lookup.
+     *
+     * @param ingredientDtos names and measurements
+     * @return the entry of every name
+     */
+    private Map<String, CatalogIngredient> resolveNames(List<IngredientDto> ingredientDtos) {
+        List<String> names = new ArrayList<>(ingredientDtos.size());
+        ingredientDtos.forEach(ingredientDto -> names.add(ingredientDto.getName()));
+        return ingredientCatalog.resolveAll(names);
+    }
+
+    private static String catalogName(String name) {
+        return name == null ? "" : CatalogIngredient.normalize(name);
+    }
 
     /**
-     * Verify and return the Ingredient for a particular recipeId and ingredientId
+     * Verify and return the Ingredient for a particular recipeId and ingredientId, without loading the recipe.
      * @param recipeId recipeId
      * @param ingredientId id
      * @return the found Ingredient
      * @throws NoSuchElementException if no Ingredient found
      */
     public Ingredient verifyRecipeAndIngredient(Long recipeId, Long ingredientId) throws NoSuchElementException {
-        return ingredientRepository.findByRecipeAndIngredientId(verifyRecipe(recipeId), ingredientId).orElseThrow(() ->
+        checkRecipe(recipeId);
+        return ingredientRepository.findByRecipeIdAndIngredientId(recipeId, ingredientId).orElseThrow(() ->
                 new NoSuchElementException("Recipe-Ingredient pair for request("
                         + recipeId + " for ingredient" + ingredientId));
     }
@@ -0,0 +1,78 @@
+package com.example.recipe.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.example.recipe.domain.CatalogIngredient;
+import com.example.recipe.domain.RecipeView;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Snapshot of the searchable fields of one recipe, as held by the RecipeSearchIndex.
+ */
+@Getter
+public final class RecipeDocument {
+    private final long recipeId;
+    private final boolean vegan;
+    private final boolean containsMeat;
+    private final Integer noOfServings;
+
+    /**
+     * Ingredient names as entered, whitespace collapsed, per ingredient id.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final Map<Long, String> ingredients;
+
+    /**
+     * Display name per normalized ingredient name, the first in order of the names as entered.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, String> displayNames;
+
+    RecipeDocument(RecipeView recipe, Map<Long, String> ingredients) {
+        this(recipe.getRecipeId(), recipe.isVegan(), recipe.isContainsMeat(), recipe.getNoOfServings(), ingredients);
+    }
+
+    RecipeDocument(long recipeId, boolean vegan, boolean containsMeat, Integer noOfServings,
+                   Map<Long, String> ingredients) {
+        this.recipeId = recipeId;
+        this.vegan = vegan;
+        this.containsMeat = containsMeat;
+        this.noOfServings = noOfServings;
+        this.ingredients = ingredients;
+        this.displayNames = ingredients.isEmpty() ? Collections.emptyMap() : new HashMap<>();
+        for (String name : ingredients.values()) {
+            displayNames.merge(CatalogIngredient.normalize(name), name, (first, other) ->
+                    first.compareTo(other) <= 0 ? first : other);
+        }
+    }
+
+    RecipeDocument withIngredients(Map<Long, String> ingredients) {
+        return new RecipeDocument(recipeId, vegan, containsMeat, noOfServings, ingredients);
+    }
+
+    /**
+     * @return the distinct normalized ingredient names
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(displayNames.keySet());
+    }
+
+    /**
+     * @param name normalized ingredient name
+     * @return the name to show for it, null if the recipe has no such ingredient
+     */
+    public String displayName(String name) {
+        return displayNames.get(name);
+    }
+
+    /**
+     * @return the bit of the recipe in the bitmaps of the RecipeSearchIndex, which only holds the ids that fit
+     */
+    int bit() {
+        return Math.toIntExact(recipeId);
+    }
+}
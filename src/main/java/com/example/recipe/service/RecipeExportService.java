@@ -0,0 +1,103 @@
+package com.example.recipe.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.repo.RecipeRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Export of the whole recipe catalog as newline delimited JSON, one recipe with its ingredients per line.
+ *
+ * Rows are streamed from a database cursor straight into the output, so memory stays constant
+ * whatever the size of the catalog.
+ */
+@Service
+public class RecipeExportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecipeExportService.class);
+
+    private final RecipeRepository recipeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    /**
+     * Construct RecipeExportService
+     *
+     * @param recipeRepository Recipe Repository
+     * @param transactionManager transaction manager of the export transaction
+     * @param objectMapper source of the JSON generator
+     * @param fetchSize number of rows fetched from the database at a time
+     */
+    @Autowired
+    public RecipeExportService(RecipeRepository recipeRepository, PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper, @Value("${recipe.export.fetch-size:1000}") int fetchSize) {
+        this.recipeRepository = recipeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Write every recipe with its ingredients, one JSON object per line.
+     *
+     * @param out the output, left open
+     * @throws IOException if the output cannot be written
+     */
+    public void export(OutputStream out) throws IOException {
+        LOGGER.info("Export recipes");
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            transactionTemplate.execute(status -> {
+                recipeRepository.scrollWithIngredients(fetchSize, (recipe, ingredients) -> {
+                    try {
+                        write(generator, recipe, ingredients);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void write(JsonGenerator generator, RecipeSummary recipe, List<Ingredient> ingredients)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("recipeId", recipe.getRecipeId());
+        generator.writeStringField("name", recipe.getName());
+        generator.writeStringField("instructions", recipe.getInstructions());
+        generator.writeBooleanField("containsMeat", recipe.isContainsMeat());
+        generator.writeBooleanField("vegan", recipe.isVegan());
+        if (recipe.getNoOfServings() != null) {
+            generator.writeNumberField("noOfServings", recipe.getNoOfServings());
+        }
+        generator.writeArrayFieldStart("ingredients");
+        for (Ingredient ingredient : ingredients) {
+            generator.writeStartObject();
+            generator.writeNumberField("ingredientId", ingredient.getIngredientId());
+            generator.writeStringField("name", ingredient.getName());
+            generator.writeStringField("measurement", ingredient.getMeasurement());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
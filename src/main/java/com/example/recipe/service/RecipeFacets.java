@@ -0,0 +1,52 @@
+package com.example.recipe.service;
+
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Number of recipes matching a search, broken down by the value of each filter.
+ */
+@Getter
+public class RecipeFacets {
+
+    private final int total;
+
+    /**
+     * Matching recipes per value of the vegetarian filter.
+     */
+    private final Map<Boolean, Integer> vegetarian;
+
+    /**
+     * Matching recipes per value of the contains-meat flag.
+     */
+    private final Map<Boolean, Integer> containsMeat;
+
+    /**
+     * Matching recipes per number of servings, in ascending order.
+     */
+    private final Map<Integer, Integer> serves;
+
+    /**
+     * Matching recipes per ingredient name, the most used ingredients first.
+     */
+    private final Map<String, Integer> ingredients;
+
+    /**
+     * Constructor to fully initialize the RecipeFacets
+     *
+     * @param total number of matching recipes
+     * @param vegetarian counts per vegetarian value
+     * @param containsMeat counts per contains-meat value
+     * @param serves counts per number of servings
+     * @param ingredients counts of the top ingredients
+     */
+    public RecipeFacets(int total, Map<Boolean, Integer> vegetarian, Map<Boolean, Integer> containsMeat,
+                        Map<Integer, Integer> serves, Map<String, Integer> ingredients) {
+        this.total = total;
+        this.vegetarian = vegetarian;
+        this.containsMeat = containsMeat;
+        this.serves = serves;
+        this.ingredients = ingredients;
+    }
+}
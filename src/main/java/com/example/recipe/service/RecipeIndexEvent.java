@@ -0,0 +1,38 @@
+package com.example.recipe.service;
+
+import lombok.Getter;
+
+/**
+ * Published by the RecipeSearchIndex after a recipe, or one of its ingredients, changed in the index.
+ */
+@Getter
+public class RecipeIndexEvent {
+
+    /**
+     * The recipe before the change, null when it was added or the whole index was rebuilt.
+     */
+    private final RecipeDocument previous;
+
+    /**
+     * The recipe after the change, null when it was removed or the whole index was rebuilt.
+     */
+    private final RecipeDocument current;
+
+    /**
+     * Constructor to fully initialize the RecipeIndexEvent
+     *
+     * @param previous the recipe before the change
+     * @param current the recipe after the change
+     */
+    public RecipeIndexEvent(RecipeDocument previous, RecipeDocument current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * @return true when the whole index was rebuilt rather than a single recipe changed
+     */
+    public boolean isRebuild() {
+        return previous == null && current == null;
+    }
+}
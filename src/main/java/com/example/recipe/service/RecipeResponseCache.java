@@ -0,0 +1,182 @@
+package com.example.recipe.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of the serialized GET responses of the recipes, plain and gzipped, so that a popular recipe is
+ * neither assembled nor serialized again until it changes.
+ *
+ * There is one entry per recipe, holding the responses of one recipe version in a few variants, so a write
+ * never serves a stale body and the services drop the entry of a recipe once a write to it or its ingredients
+ * commits. The cache is bounded by the bytes it holds, the entries least likely to be read again evicted
+ * first; the variants past the first few of a version are serialized without being cached.
+ * Hit, miss and eviction counts are exposed as the recipe.responses cache metrics.
+ */
+@Component
+public class RecipeResponseCache {
+    static final String CACHE_NAME = "recipe.responses";
+    private static final int ENTRY_OVERHEAD = 96;
+    static final int MAX_VARIANTS = 8;
+
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+    private final Cache<Long, Variants> cache;
+    private final boolean enabled;
+
+    /**
+     * Construct RecipeResponseCache
+     *
+     * @param meterRegistry registry of the cache metrics
+     * @param maximumBytes maximum size of the cached bodies
+     * @param enabled false to serialize every response
+     */
+    @Autowired
+    public RecipeResponseCache(MeterRegistry meterRegistry,
+                               @Value("${recipe.response.cache.maximum-bytes:67108864}") long maximumBytes,
+                               @Value("${recipe.response.cache.enabled:true}") boolean enabled) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((Long recipeId, Variants variants) -> variants.weight())
+                .recordStats(() -> stats)
+                .build();
+        this.enabled = enabled;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the cached response of a recipe version, or serialize and cache it.
+     *
+     * @param recipeId recipe identifier
+     * @param version recipe version the body is made of
+     * @param variant anything else the body depends on, null not to cache the response
+     * @param serializer serializes the body
+     * @return the response, not gzipped when it is not cached
+     */
+    public SerializedResponse get(Long recipeId, long version, String variant, Supplier<byte[]> serializer) {
+        if (!enabled || variant == null) {
+            return new SerializedResponse(serializer.get(), null);
+        }
+        Variants cached = cache.asMap().get(recipeId);
+        SerializedResponse response = cached == null || cached.version != version ? null
+                : cached.responses.get(variant);
+        if (response != null) {
+            stats.recordHits(1);
+            return response;
+        }
+        stats.recordMisses(1);
+        if (cached != null && cached.version == version && cached.responses.size() >= MAX_VARIANTS) {
+            return new SerializedResponse(serializer.get(), null);
+        }
+        byte[] body = serializer.get();
+        SerializedResponse serialized = new SerializedResponse(body, gzip(body));
+        cache.asMap().compute(recipeId, (id, current) ->
+                current == null || current.version < version ? new Variants(version, variant, serialized)
+                        : current.version > version ? current : current.with(variant, serialized));
+        return serialized;
+    }
+
+    /**
+     * Drop the cached responses of a recipe.
+     *
+     * @param recipeId recipe identifier
+     */
+    public void invalidate(Long recipeId) {
+        cache.invalidate(recipeId);
+    }
+
+    /**
+     * @param body response body
+     * @return the gzipped body, null when it is not smaller
+     */
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.size() < body.length ? bytes.toByteArray() : null;
+    }
+
+    /**
+     * A serialized response body, and the same body gzipped.
+     */
+    public static final class SerializedResponse {
+        private final byte[] body;
+        private final byte[] gzipped;
+
+        private SerializedResponse(byte[] body, byte[] gzipped) {
+            this.body = body;
+            this.gzipped = gzipped;
+        }
+
+        /**
+         * @return the body, shared with the cache and not to be changed
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return the gzipped body, shared with the cache and not to be changed, null when not worth it
+         */
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        private int weight() {
+            return ENTRY_OVERHEAD + body.length + (gzipped == null ? 0 : gzipped.length);
+        }
+    }
+
+    /**
+     * The responses of one version of a recipe, per variant, replaced as a whole when a variant is added.
+     */
+    private static final class Variants {
+        private final long version;
+        private final Map<String, SerializedResponse> responses;
+
+        private Variants(long version, String variant, SerializedResponse response) {
+            this(version, Collections.singletonMap(variant, response));
+        }
+
+        private Variants(long version, Map<String, SerializedResponse> responses) {
+            this.version = version;
+            this.responses = responses;
+        }
+
+        private Variants with(String variant, SerializedResponse response) {
+            if (responses.size() >= MAX_VARIANTS || responses.containsKey(variant)) {
+                return this;
+            }
+            Map<String, SerializedResponse> added = new HashMap<>(responses);
+            added.put(variant, response);
+            return new Variants(version, Collections.unmodifiableMap(added));
+        }
+
+        private int weight() {
+            int weight = 0;
+            for (Map.Entry<String, SerializedResponse> response : responses.entrySet()) {
+                weight += response.getKey().length() + response.getValue().weight();
+            }
+            return weight;
+        }
+    }
+}
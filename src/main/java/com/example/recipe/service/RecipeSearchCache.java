@@ -0,0 +1,236 @@
+package com.example.recipe.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.repo.ReplicaRoutingDataSource;
+import com.example.recipe.web.RecipeSearchCriteria;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of the recipe search results, keyed by the normalized criteria and the requested slice.
+ *
+ * Entries are evicted by size and age, and invalidated when a RecipeIndexEvent shows that the changed
+ * recipe matched their criteria before or after the change and lies after their cursor.
+ * The keys are indexed by a name they require, else by their serves, so that a change only checks the keys
+ * it may match. Results are loaded from the primary: a lagging replica would otherwise leave a result
+ * cached without the change that just invalidated it.
+ * Hit, miss and eviction counts are exposed as the recipe.search.results cache metrics.
+ */
+@Component
+public class RecipeSearchCache {
+    static final String CACHE_NAME = "recipe.search.results";
+    private static final Object UNFILTERED = new Object();
+
+    private final Cache<Key, Slice<RecipeSummary>> cache;
+    private final Map<Object, Set<Key>> keysByAnchor = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Construct RecipeSearchCache
+     *
+     * @param meterRegistry registry of the cache metrics
+     * @param maximumSize maximum number of cached results
+     * @param expireAfterWriteSeconds lifetime of a cached result
+     * @param enabled false to always run the searches
+     */
+    @Autowired
+    public RecipeSearchCache(MeterRegistry meterRegistry,
+                             @Value("${recipe.search.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${recipe.search.cache.expire-after-write-seconds:60}") long expireAfterWriteSeconds,
+                             @Value("${recipe.search.cache.enabled:true}") boolean enabled) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .writer(new CacheWriter<Key, Slice<RecipeSummary>>() {
+                    @Override
+                    public void write(Key key, Slice<RecipeSummary> slice) {
+                        keysByAnchor.computeIfAbsent(key.anchor(), anchor -> ConcurrentHashMap.newKeySet()).add(key);
+                    }
+
+                    @Override
+                    public void delete(Key key, Slice<RecipeSummary> slice, RemovalCause cause) {
+                        keysByAnchor.computeIfPresent(key.anchor(), (anchor, keys) -> {
+                            keys.remove(key);
+                            return keys.isEmpty() ? null : keys;
+                        });
+                    }
+                })
+                .build();
+        this.enabled = enabled;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the cached result of a search, or run it and cache its result.
+     *
+     * @param criteria search criteria
+     * @param after id of the last recipe of the previous slice, null for the first slice
+     * @param size maximum number of recipes in the slice
+     * @param search runs the search
+     * @return Slice of Recipes
+     */
+    public Slice<RecipeSummary> get(RecipeSearchCriteria criteria, Long after, int size, Supplier<Slice<RecipeSummary>> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        Key key = new Key(criteria, after, size);
+        Slice<RecipeSummary> slice = cache.getIfPresent(key);
+        if (slice != null) {
+            return slice;
+        }
+        long started = generation.get();
+        slice = ReplicaRoutingDataSource.readPrimary(search);
+        cache.put(key, slice);
+        // a write that landed while searching may have invalidated before the put, drop the possibly stale result
+        if (generation.get() != started) {
+            cache.invalidate(key);
+        }
+        return slice;
+    }
+
+    /**
+     * Invalidate the results a change of the search index may have altered.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onIndexChange(RecipeIndexEvent event) {
+        generation.incrementAndGet();
+        if (event.isRebuild()) {
+            cache.invalidateAll();
+            return;
+        }
+        Set<Key> candidates = new HashSet<>();
+        collectCandidates(event.getPrevious(), candidates);
+        collectCandidates(event.getCurrent(), candidates);
+        for (Key key : candidates) {
+            if (key.matches(event.getPrevious()) || key.matches(event.getCurrent())) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Collect the keys indexed under an anchor the recipe has.
+     */
+    private void collectCandidates(RecipeDocument document, Set<Key> candidates) {
+        if (document == null) {
+            return;
+        }
+        addKeys(UNFILTERED, candidates);
+        if (document.getNoOfServings() != null) {
+            addKeys(document.getNoOfServings().longValue(), candidates);
+        }
+        document.names().forEach(name -> addKeys(name, candidates));
+    }
+
+    private void addKeys(Object anchor, Set<Key> candidates) {
+        Set<Key> keys = keysByAnchor.get(anchor);
+        if (keys != null) {
+            candidates.addAll(keys);
+        }
+    }
+
+    /**
+     * Normalized search criteria and slice.
+     */
+    private static final class Key {
+        private final boolean vegetarian;
+        private final Long serves;
+        private final SortedSet<String> required;
+        private final SortedSet<String> excluded;
+        private final String instructions;
+        private final Long after;
+        private final int size;
+
+        private Key(RecipeSearchCriteria criteria, Long after, int size) {
+            this.vegetarian = criteria.isVegetarian();
+            this.serves = criteria.getServes();
+            this.required = normalize(criteria.requiredIngredients());
+            this.excluded = normalize(criteria.excludedIngredients());
+            this.instructions = criteria.getIncludeInstructions();
+            this.after = after;
+            this.size = size;
+        }
+
+        /**
+         * A recipe this result may contain has the anchor: the first required name, else the serves.
+         *
+         * @return the anchor of the key in the index of the keys
+         */
+        private Object anchor() {
+            if (!required.isEmpty()) {
+                return required.first();
+            }
+            return serves != null ? serves : UNFILTERED;
+        }
+
+        /**
+         * Whether a recipe may be part of this result. Instructions are not in the documents,
+         * so a result filtered on them is invalidated by any recipe matching its other criteria.
+         *
+         * @param document the recipe, null for none
+         * @return true if the result may contain the recipe
+         */
+        private boolean matches(RecipeDocument document) {
+            if (document == null
+                    || after != null && document.getRecipeId() <= after
+                    || vegetarian && !document.isVegan()
+                    || serves != null && !Objects.equals(serves.intValue(), document.getNoOfServings())) {
+                return false;
+            }
+            Set<String> names = document.names();
+            return names.containsAll(required) && Collections.disjoint(names, excluded);
+        }
+
+        private static SortedSet<String> normalize(Collection<String> names) {
+            SortedSet<String> normalized = new TreeSet<>();
+            names.forEach(name -> normalized.add(RecipeSearchIndex.normalize(name)));
+            return normalized;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return vegetarian == key.vegetarian && size == key.size && Objects.equals(serves, key.serves)
+                    && required.equals(key.required) && excluded.equals(key.excluded)
+                    && Objects.equals(instructions, key.instructions) && Objects.equals(after, key.after);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(vegetarian, serves, required, excluded, instructions, after, size);
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package com.example.recipe.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.example.recipe.domain.CatalogIngredient;
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.repo.RecipeRepository;
+import com.example.recipe.web.RecipeSearchCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.rest.core.event.AfterCreateEvent;
+import org.springframework.data.rest.core.event.AfterDeleteEvent;
+import org.springframework.data.rest.core.event.AfterSaveEvent;
+import org.springframework.data.rest.core.event.RepositoryEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * In-memory inverted index used to answer recipe searches without touching the database.
+ *
+ * Every ingredient name maps to a bitmap of the recipe ids using it, and the vegan and servings
+ * and contains-meat attributes are kept as bitmap columns, so a search is a handful of bitmap intersections,
+ * and so are the facet counts of its result.
+ * The index is built when the context is refreshed and kept current by RecipeService and IngredientService;
+ * every change is published as a RecipeIndexEvent, under the write lock so that the listeners get the changes
+ * in the order they were made. The bitmaps hold the recipe ids up to Integer.MAX_VALUE:
+ * once a recipe id is beyond, the index is dropped and the searches left to the database.
+ */
+@Component
+public class RecipeSearchIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecipeSearchIndex.class);
+    private static final int FETCH_SIZE = 1000;
+
+    private final RecipeRepository recipeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, RecipeDocument> documents = new HashMap<>();
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private final Map<Integer, BitSet> servings = new HashMap<>();
+    private final BitSet recipes = new BitSet();
+    private final BitSet vegan = new BitSet();
+    private final BitSet meat = new BitSet();
+    private volatile boolean ready;
+
+    /**
+     * Construct RecipeSearchIndex
+     *
+     * @param recipeRepository Recipe Repository
+     * @param eventPublisher publisher of the RecipeIndexEvents
+     * @param enabled false to leave searches to the database
+     */
+    @Autowired
+    public RecipeSearchIndex(RecipeRepository recipeRepository, ApplicationEventPublisher eventPublisher,
+                             @Value("${recipe.search.index.enabled:true}") boolean enabled) {
+        this.recipeRepository = recipeRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Load every recipe and ingredient into the index, before the web server accepts requests.
+     * The recipes are scrolled as scalar rows, each with its ingredient names, so no entity is loaded.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            List<Long> outOfRange = new ArrayList<>(1);
+            recipeRepository.scrollIngredientNames(FETCH_SIZE, (recipe, names) -> {
+                if (!outOfRange.isEmpty()) {
+                    return;
+                }
+                if (!fits(recipe.getRecipeId())) {
+                    outOfRange.add(recipe.getRecipeId());
+                    return;
+                }
+                names.replaceAll((ingredientId, name) -> CatalogIngredient.collapseWhitespace(name));
+                index(new RecipeDocument(recipe, names));
+            });
+            if (!outOfRange.isEmpty()) {
+                LOGGER.error("Recipe {} is out of the range of the search index, searches go to the database",
+                        outOfRange.get(0));
+                clear();
+                return;
+            }
+            ready = true;
+            LOGGER.info("Indexed {} recipes and {} ingredient names", documents.size(), postings.size());
+        } finally {
+            eventPublisher.publishEvent(new RecipeIndexEvent(null, null));
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true once the index can answer searches
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Tell that a recipe does not exist, without a query. The index learns of recipes as they are committed,
+     * so a recipe it lacks has not been created; one it holds is left to the database to confirm.
+     *
+     * @param recipeId recipe identifier
+     * @return true if the index is ready and holds no such recipe
+     */
+    public boolean isMissing(Long recipeId) {
+        if (!ready || !fits(recipeId)) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return !recipes.get(recipeId.intValue());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add a newly created recipe, together with its ingredients.
+     *
+     * @param recipe recipe
+     */
+    public void addRecipe(Recipe recipe) {
+        if (!ready || recipe == null) {
+            return;
+        }
+        if (!fits(recipe.getRecipeId())) {
+            drop(recipe.getRecipeId());
+            return;
+        }
+        Map<Long, String> ingredients = new HashMap<>();
+        if (recipe.getIngredients() != null) {
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                if (ingredient.getIngredientId() != null && ingredient.getName() != null) {
+                    ingredients.put(ingredient.getIngredientId(), CatalogIngredient.collapseWhitespace(ingredient.getName()));
+                }
+            }
+        }
+        RecipeDocument current = new RecipeDocument(recipe, ingredients);
+        RecipeDocument previous;
+        lock.writeLock().lock();
+        try {
+            previous = unindex(recipe.getRecipeId());
+            index(current);
+            publish(previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Follow the recipes written through the Spring Data REST resource of the RecipeRepository,
+     * which does not go through RecipeService.
+     *
+     * @param event repository event
+     */
+    @EventListener({AfterCreateEvent.class, AfterSaveEvent.class, AfterDeleteEvent.class})
+    public void onRepositoryEvent(RepositoryEvent event) {
+        if (!(event.getSource() instanceof Recipe)) {
+            return;
+        }
+        Recipe recipe = (Recipe) event.getSource();
+        if (event instanceof AfterDeleteEvent) {
+            removeRecipe(recipe.getRecipeId());
+        } else if (event instanceof AfterCreateEvent) {
+            addRecipe(recipe);
+        } else {
+            updateRecipe(recipe);
+        }
+    }
+
+    /**
+     * Refresh the attributes of a recipe, keeping its ingredients.
+     *
+     * @param recipe recipe
+     */
+    public void updateRecipe(Recipe recipe) {
+        if (!ready || recipe == null) {
+            return;
+        }
+        if (!fits(recipe.getRecipeId())) {
+            drop(recipe.getRecipeId());
+            return;
+        }
+        RecipeDocument previous;
+        RecipeDocument current;
+        lock.writeLock().lock();
+        try {
+            previous = unindex(recipe.getRecipeId());
+            current = new RecipeDocument(recipe, previous == null ? Collections.emptyMap() : previous.getIngredients());
+            index(current);
+            publish(previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a recipe and all of its ingredients.
+     *
+     * @param recipeId recipe identifier
+     */
+    public void removeRecipe(Long recipeId) {
+        if (!ready || recipeId == null) {
+            return;
+        }
+        RecipeDocument previous;
+        lock.writeLock().lock();
+        try {
+            previous = unindex(recipeId);
+            publish(previous, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add an ingredient, or pick up the new name of an existing one.
+     *
+     * @param ingredient ingredient
+     */
+    public void putIngredient(Ingredient ingredient) {
+        if (!ready || ingredient == null || ingredient.getRecipe() == null || ingredient.getName() == null) {
+            return;
+        }
+        RecipeDocument previous;
+        RecipeDocument current;
+        lock.writeLock().lock();
+        try {
+            previous = documents.get(ingredient.getRecipe().getRecipeId());
+            current = addIngredient(ingredient);
+            publish(previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an ingredient from its recipe.
+     *
+     * @param ingredient ingredient
+     */
+    public void removeIngredient(Ingredient ingredient) {
+        if (!ready || ingredient == null || ingredient.getRecipe() == null) {
+            return;
+        }
+        RecipeDocument previous;
+        RecipeDocument current = null;
+        lock.writeLock().lock();
+        try {
+            previous = unindex(ingredient.getRecipe().getRecipeId());
+            if (previous != null) {
+                Map<Long, String> ingredients = new HashMap<>(previous.getIngredients());
+                ingredients.remove(ingredient.getIngredientId());
+                current = previous.withIngredients(ingredients);
+                index(current);
+            }
+            publish(previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add, rename and remove several ingredients of a recipe, publishing one change.
+     *
+     * @param recipeId recipe identifier
+     * @param put ingredients added or renamed
+     * @param removed ingredients removed
+     */
+    public void changeIngredients(Long recipeId, Collection<Ingredient> put, Collection<Ingredient> removed) {
+        if (!ready || recipeId == null) {
+            return;
+        }
+        RecipeDocument previous;
+        RecipeDocument current = null;
+        lock.writeLock().lock();
+        try {
+            previous = unindex(recipeId);
+            if (previous != null) {
+                Map<Long, String> ingredients = new HashMap<>(previous.getIngredients());
+                removed.forEach(ingredient -> ingredients.remove(ingredient.getIngredientId()));
+                for (Ingredient ingredient : put) {
+                    if (ingredient.getName() != null) {
+                        ingredients.put(ingredient.getIngredientId(), CatalogIngredient.collapseWhitespace(ingredient.getName()));
+                    }
+                }
+                current = previous.withIngredients(ingredients);
+                index(current);
+            }
+            publish(previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the recipes matching the vegetarian, servings and ingredient criteria:
+     * the postings of the required ingredients are intersected, those of the excluded ones subtracted.
+     * Instructions are not indexed and are left to the caller.
+     *
+     * @param criteria search criteria
+     * @return a bitmap of the matching recipe ids, owned by the caller
+     */
+    public BitSet search(RecipeSearchCriteria criteria) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) recipes.clone();
+            if (criteria.isVegetarian()) {
+                matches.and(vegan);
+            }
+            if (criteria.getServes() != null) {
+                matches.and(servings.getOrDefault(criteria.getServes().intValue(), new BitSet()));
+            }
+            for (String name : criteria.requiredIngredients()) {
+                BitSet posting = postings.get(normalize(name));
+                if (posting == null) {
+                    return new BitSet();
+                }
+                matches.and(posting);
+            }
+            for (String name : criteria.excludedIngredients()) {
+                BitSet posting = postings.get(normalize(name));
+                if (posting != null) {
+                    matches.andNot(posting);
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of every indexed recipe
+     */
+    public List<RecipeDocument> documents() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(documents.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count the recipes of a search result per value of every filter. The vegetarian, contains-meat and
+     * servings counts are intersections with their bitmap columns; ingredients are counted over the
+     * postings, or over the matching recipes when these are fewer than the ingredient names.
+     *
+     * @param matches bitmap of the matching recipe ids
+     * @param topIngredients number of ingredients to count, the most used first
+     * @return the counts of the matching recipes
+     */
+    public RecipeFacets facets(BitSet matches, int topIngredients) {
+        lock.readLock().lock();
+        try {
+            int total = matches.cardinality();
+            int veganCount = intersection(matches, vegan);
+            int meatCount = intersection(matches, meat);
+
+            Map<Integer, Integer> serves = new TreeMap<>();
+            servings.forEach((value, bits) -> putCount(serves, value, intersection(matches, bits)));
+
+            Map<String, Integer> ingredients = new HashMap<>();
+            if (total < postings.size()) {
+                for (int bit = matches.nextSetBit(0); bit >= 0; bit = matches.nextSetBit(bit + 1)) {
+                    RecipeDocument document = documents.get((long) bit);
+                    if (document != null) {
+                        document.names().forEach(name -> ingredients.merge(name, 1, Integer::sum));
+                    }
+                }
+            } else {
+                postings.forEach((name, bits) -> putCount(ingredients, name, intersection(matches, bits)));
+            }
+
+            return new RecipeFacets(total, booleanCounts(veganCount, total), booleanCounts(meatCount, total),
+                    serves, top(ingredients, topIngredients));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ingredient names are matched by their catalog name, as the database search does.
+     *
+     * @param name ingredient name
+     * @return the key used in the postings
+     */
+    static String normalize(String name) {
+        return CatalogIngredient.normalize(name);
+    }
+
+    /**
+     * Tell whether a recipe id has a bit in the bitmaps.
+     *
+     * @param recipeId recipe identifier
+     * @return true for the ids from 0 to Integer.MAX_VALUE
+     */
+    static boolean fits(Long recipeId) {
+        return recipeId != null && recipeId >= 0 && recipeId <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Drop the index for a recipe it cannot hold, leaving the searches to the database until it is rebuilt.
+     */
+    private void drop(Long recipeId) {
+        LOGGER.error("Recipe {} is out of the range of the search index, searches go to the database", recipeId);
+        lock.writeLock().lock();
+        try {
+            clear();
+            eventPublisher.publishEvent(new RecipeIndexEvent(null, null));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear() {
+        ready = false;
+        documents.clear();
+        postings.clear();
+        servings.clear();
+        recipes.clear();
+        vegan.clear();
+        meat.clear();
+    }
+
+    private RecipeDocument addIngredient(Ingredient ingredient) {
+        if (ingredient.getRecipe() == null || ingredient.getName() == null) {
+            return null;
+        }
+        RecipeDocument previous = unindex(ingredient.getRecipe().getRecipeId());
+        if (previous == null) {
+            return null;
+        }
+        Map<Long, String> ingredients = new HashMap<>(previous.getIngredients());
+        ingredients.put(ingredient.getIngredientId(), CatalogIngredient.collapseWhitespace(ingredient.getName()));
+        RecipeDocument current = previous.withIngredients(ingredients);
+        index(current);
+        return current;
+    }
+
+    private void publish(RecipeDocument previous, RecipeDocument current) {
+        if (previous != null || current != null) {
+            eventPublisher.publishEvent(new RecipeIndexEvent(previous, current));
+        }
+    }
+
+    private void index(RecipeDocument document) {
+        int bit = document.bit();
+        documents.put(document.getRecipeId(), document);
+        recipes.set(bit);
+        if (document.isVegan()) {
+            vegan.set(bit);
+        }
+        if (document.isContainsMeat()) {
+            meat.set(bit);
+        }
+        if (document.getNoOfServings() != null) {
+            servings.computeIfAbsent(document.getNoOfServings(), key -> new BitSet()).set(bit);
+        }
+        for (String name : document.names()) {
+            postings.computeIfAbsent(name, key -> new BitSet()).set(bit);
+        }
+    }
+
+    private RecipeDocument unindex(Long recipeId) {
+        RecipeDocument document = documents.remove(recipeId);
+        if (document == null) {
+            return null;
+        }
+        int bit = document.bit();
+        recipes.clear(bit);
+        vegan.clear(bit);
+        meat.clear(bit);
+        if (document.getNoOfServings() != null) {
+            clearBit(servings, document.getNoOfServings(), bit);
+        }
+        for (String name : document.names()) {
+            clearBit(postings, name, bit);
+        }
+        return document;
+    }
+
+    private static int intersection(BitSet matches, BitSet column) {
+        BitSet bits = (BitSet) column.clone();
+        bits.and(matches);
+        return bits.cardinality();
+    }
+
+    private static <K> void putCount(Map<K, Integer> counts, K key, int count) {
+        if (count > 0) {
+            counts.put(key, count);
+        }
+    }
+
+    private static Map<Boolean, Integer> booleanCounts(int count, int total) {
+        Map<Boolean, Integer> counts = new LinkedHashMap<>();
+        counts.put(true, count);
+        counts.put(false, total - count);
+        return counts;
+    }
+
+    private static Map<String, Integer> top(Map<String, Integer> counts, int limit) {
+        Map<String, Integer> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> column, K key, int bit) {
+        BitSet bits = column.get(key);
+        if (bits != null) {
+            bits.clear(bit);
+            if (bits.isEmpty()) {
+                column.remove(key);
+            }
+        }
+    }
+}
@@ -1,18 +1,40 @@
 package com.example.recipe.service;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import com.example.recipe.domain.CatalogIngredient;
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.PartialRecipe;
 import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeField;
+import com.example.recipe.domain.RecipeSummary;
 import com.example.recipe.repo.RecipeRepository;
+import com.example.recipe.web.IngredientDto;
 import com.example.recipe.web.RecipeDto;
+import com.example.recipe.web.RecipeSearchCriteria;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Recipe Service
@@ -23,15 +45,36 @@ import org.springframework.stereotype.Service;
 public class RecipeService {
     private static final Logger LOGGER = LoggerFactory.getLogger(RecipeService.class);
     private final RecipeRepository recipeRepository;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeTextIndex recipeTextIndex;
+    private final RecipeSearchCache recipeSearchCache;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final IngredientCatalog ingredientCatalog;
+    private final RecipeResponseCache recipeResponseCache;
 
     /**
      * Construct RecipeService
      *
      * @param recipeRepository Recipe Repository
+     * @param recipeSearchIndex Recipe Search Index
+     * @param recipeTextIndex Recipe Full-Text Index
+     * @param recipeSearchCache Recipe Search Result Cache
+     * @param recipeSimilarityIndex Recipe Similarity Index
+     * @param ingredientCatalog Ingredient Catalog
+     * @param recipeResponseCache Recipe Response Cache
      */
     @Autowired
-    public RecipeService(RecipeRepository recipeRepository) {
+    public RecipeService(RecipeRepository recipeRepository, RecipeSearchIndex recipeSearchIndex,
+                         RecipeTextIndex recipeTextIndex, RecipeSearchCache recipeSearchCache,
+                         RecipeSimilarityIndex recipeSimilarityIndex, IngredientCatalog ingredientCatalog,
+                         RecipeResponseCache recipeResponseCache) {
         this.recipeRepository = recipeRepository;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeTextIndex = recipeTextIndex;
+        this.recipeSearchCache = recipeSearchCache;
+        this.recipeSimilarityIndex = recipeSimilarityIndex;
+        this.ingredientCatalog = ingredientCatalog;
+        this.recipeResponseCache = recipeResponseCache;
     }
 
     /**
@@ -41,7 +84,27 @@ public class RecipeService {
      */
     public void createNew(RecipeDto recipeDto) throws NoSuchElementException {
         LOGGER.info("Create new recipe name {}", recipeDto.getName());
-        recipeRepository.save(new Recipe(recipeDto.getName(), recipeDto.getInstructions(), recipeDto.isContainsMeat(), recipeDto.isVegan(), recipeDto.getNoOfServings(), recipeDto.getIngredients()));
+        Recipe recipe = recipeRepository.save(toRecipe(recipeDto, resolveIngredients(Collections.singletonList(recipeDto))));
+        recipeTextIndex.index(recipe);
+        recipeSearchIndex.addRecipe(recipe);
+    }
+
+    /**
+     * Create recipes and their ingredients in one transaction.
+     * Ids are allocated in pools, so the inserts are sent in JDBC batches.
+     *
+     * @param recipeDtos recipeDtos
+     * @return the created Recipes
+     */
+    public List<Recipe> createAll(List<RecipeDto> recipeDtos) {
+        LOGGER.info("Create {} recipes", recipeDtos.size());
+        List<Recipe> recipes = new ArrayList<>(recipeDtos.size());
+        Map<String, CatalogIngredient> catalog = resolveIngredients(recipeDtos);
+        recipeRepository.saveAll(recipeDtos.stream().map(recipeDto -> toRecipe(recipeDto, catalog)).collect(Collectors.toList()))
+                .forEach(recipes::add);
+        recipeTextIndex.index(recipes);
+        recipes.forEach(recipeSearchIndex::addRecipe);
+        return recipes;
     }
 
     /**
@@ -50,10 +113,57 @@ public class RecipeService {
      * @param id racipe identifier
      * @return Recipe
      */
+    @Transactional(readOnly = true)
     public Optional<Recipe> lookupRecipeById(Long id)  {
         return recipeRepository.findById(id);
     }
 
+    /**
+     * Get a recipe and its ingredients, loaded together.
+     *
+     * @param id recipe identifier
+     * @return Recipe
+     */
+    @Transactional(readOnly = true)
+    public Optional<Recipe> lookupRecipeWithIngredients(Long id) {
+        return recipeRepository.findWithIngredientsById(id);
+    }
+
+    /**
+     * Get the columns of a recipe shown to clients, without loading the entity.
+     *
+     * @param id recipe identifier
+     * @return RecipeSummary
+     */
+    @Transactional(readOnly = true)
+    public Optional<RecipeSummary> lookupRecipeSummaryById(Long id) {
+        return recipeRepository.findSummaryById(id);
+    }
+
+    /**
+     * Get the columns shown to clients of several recipes, with one IN query per 500 ids.
+     *
+     * @param ids recipe identifiers
+     * @return the RecipeSummaries found, by id
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, RecipeSummary> lookupRecipeSummaries(Collection<Long> ids) {
+        return ChunkedLookup.byId(ids, recipeRepository::findSummariesByIdIn, RecipeSummary::getRecipeId);
+    }
+
+    /**
+     * Get some of the fields of several recipes, selecting only their columns, with one IN query per 500 ids.
+     *
+     * @param ids recipe identifiers
+     * @param fields fields to select
+     * @return the PartialRecipes found, by id
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, PartialRecipe> lookupRecipeFields(Collection<Long> ids, Set<RecipeField> fields) {
+        return ChunkedLookup.byId(ids, chunk -> recipeRepository.findFieldsByIdIn(chunk, fields),
+                PartialRecipe::getRecipeId);
+    }
+
     /**
      * Get a page of recipe for a recipe.
      *
@@ -62,27 +172,52 @@ public class RecipeService {
      * @return Page of Recipes
      * @throws NoSuchElementException if no Recipe found.
      */
+    @Transactional(readOnly = true)
     public Page<Recipe> lookupRecipe(long recipeId, Pageable pageable) throws NoSuchElementException  {
         LOGGER.info("Lookup Recipe {}", recipeId);
         return recipeRepository.findByRecipeId(verifyRecipe(recipeId).getRecipeId(), pageable);
     }
 
+    /**
+     * Get the version of a recipe, without loading it. The search index is not asked: it only holds the
+     * recipes this instance has indexed.
+     *
+     * @param recipeId recipe identifier
+     * @return the version
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> lookupVersion(Long recipeId) {
+        return recipeRepository.findVersionById(recipeId);
+    }
+
     /**
      * Update some of the elements of a Recipe Ingredient.
      *
      * @param recipeId recipe identifier
      * @param recipeDto recipeDto
+     * @param version version the client last read, null to overwrite any version
      * @throws NoSuchElementException if no recipe found.
+     * @throws OptimisticLockingFailureException if the recipe is no longer at the version
      */
-    public Recipe update(Long recipeId, RecipeDto recipeDto) throws NoSuchElementException {
+    @Transactional
+    public Recipe update(Long recipeId, RecipeDto recipeDto, Long version) throws NoSuchElementException {
         LOGGER.info("Update recipe {}", recipeId);
         Recipe recipe = verifyRecipe(recipeId);
+        if (version != null && !version.equals(recipe.getVersion())) {
+            throw new OptimisticLockingFailureException("Recipe " + recipeId + " is at another version");
+        }
         recipe.setName(recipeDto.getName());
         recipe.setInstructions(recipeDto.getInstructions());
         recipe.setContainsMeat(recipeDto.isContainsMeat());
         recipe.setVegan(recipeDto.isVegan());
         recipe.setNoOfServings(recipeDto.getNoOfServings());
-        return recipeRepository.save(recipe);
+        Recipe saved = recipeRepository.save(recipe);
+        AfterCommit.run(() -> {
+            recipeTextIndex.index(saved);
+            recipeSearchIndex.updateRecipe(saved);
+            recipeResponseCache.invalidate(recipeId);
+        });
+        return saved;
     }
 
     /**
@@ -95,6 +230,136 @@ public class RecipeService {
         LOGGER.info("Delete Recipe {}", recipeId);
         Recipe recipe = verifyRecipe(recipeId);
         recipeRepository.delete(recipe);
+        recipeTextIndex.remove(recipeId);
+        recipeSearchIndex.removeRecipe(recipeId);
+        recipeResponseCache.invalidate(recipeId);
+    }
+
+    /**
+     * Search a slice of recipes, keyset paginated on the recipe id.
+     * The search and full-text indexes answer the criteria,
+     * the database is only used to load the recipes of the slice, and the slice is cached
+     * until a write to a matching recipe invalidates it.
+     *
+     * @param searchCriteria search criteria
+     * @param after id of the last recipe of the previous slice, null for the first slice
+     * @param size maximum number of recipes in the slice
+     * @return Slice of Recipes
+     */
+    @Transactional(readOnly = true)
+    public Slice<RecipeSummary> search(RecipeSearchCriteria searchCriteria, Long after, int size) {
+        LOGGER.info("Search recipes after {}", after);
+        if (!recipeSearchIndex.isReady() || !recipeTextIndex.isReady()) {
+            return toSlice(recipeRepository.findByCriteria(searchCriteria, after, size + 1), size);
+        }
+        return recipeSearchCache.get(searchCriteria, after, size, () -> searchIndexes(searchCriteria, after, size));
+    }
+
+    /**
+     * Search a slice of recipes like search, keeping only some of their fields.
+     * The recipes of the slice are loaded with the columns of the fields only,
+     * and are not cached.
+     *
+     * @param searchCriteria search criteria
+     * @param after id of the last recipe of the previous slice, null for the first slice
+     * @param size maximum number of recipes in the slice
+     * @param fields fields to select
+     * @return Slice of PartialRecipes
+     */
+    @Transactional(readOnly = true)
+    public Slice<PartialRecipe> search(RecipeSearchCriteria searchCriteria, Long after, int size,
+                                       Set<RecipeField> fields) {
+        LOGGER.info("Search recipe fields after {}", after);
+        if (!recipeSearchIndex.isReady() || !recipeTextIndex.isReady()) {
+            return toSlice(recipeRepository.findByCriteria(searchCriteria, after, size + 1), size)
+                    .map(recipe -> PartialRecipe.of(recipe, fields));
+        }
+        Slice<Long> ids = searchIds(searchCriteria, after, size);
+        Map<Long, PartialRecipe> recipes = ids.hasContent()
+                ? lookupRecipeFields(ids.getContent(), fields) : Collections.emptyMap();
+        return new SliceImpl<>(ids.getContent().stream().map(recipes::get).filter(Objects::nonNull)
+                .collect(Collectors.toList()), ids.getPageable(), ids.hasNext());
+    }
+
+    private Slice<RecipeSummary> searchIndexes(RecipeSearchCriteria searchCriteria, Long after, int size) {
+        Slice<Long> ids = searchIds(searchCriteria, after, size);
+        List<RecipeSummary> recipes = ids.hasContent()
+                ? recipeRepository.findSummariesByIdIn(ids.getContent()) : Collections.emptyList();
+        return new SliceImpl<>(recipes, ids.getPageable(), ids.hasNext());
+    }
+
+    /**
+     * Answer a search from the search and full-text indexes.
+     *
+     * @param searchCriteria search criteria
+     * @param after id of the last recipe of the previous slice, null for the first slice
+     * @param size maximum number of ids in the slice
+     * @return Slice of the ascending ids of the matching recipes
+     */
+    private Slice<Long> searchIds(RecipeSearchCriteria searchCriteria, Long after, int size) {
+        BitSet matches = recipeSearchIndex.search(searchCriteria);
+        if (searchCriteria.getIncludeInstructions() != null && !matches.isEmpty()) {
+            matches.and(recipeTextIndex.matchesInstructions(searchCriteria.getIncludeInstructions()));
+        }
+        List<Long> ids = new ArrayList<>();
+        if (after != null && after >= Integer.MAX_VALUE) {
+            return new SliceImpl<>(ids, PageRequest.of(0, size), false);
+        }
+        int from = after == null || after < 0 ? 0 : after.intValue() + 1;
+        for (int id = matches.nextSetBit(from); id >= 0 && ids.size() <= size; id = matches.nextSetBit(id + 1)) {
+            ids.add((long) id);
+        }
+        boolean hasNext = ids.size() > size;
+        return new SliceImpl<>(hasNext ? ids.subList(0, size) : ids, PageRequest.of(0, size), hasNext);
+    }
+
+    /**
+     * Count the recipes matching a search per value of every filter, from the search index.
+     *
+     * @param searchCriteria search criteria
+     * @param topIngredients number of ingredients to count, the most used first
+     * @return the counts, empty when the search indexes are not available
+     */
+    public Optional<RecipeFacets> facets(RecipeSearchCriteria searchCriteria, int topIngredients) {
+        LOGGER.info("Count search facets");
+        if (!recipeSearchIndex.isReady() || !recipeTextIndex.isReady()) {
+            return Optional.empty();
+        }
+        BitSet matches = recipeSearchIndex.search(searchCriteria);
+        if (searchCriteria.getIncludeInstructions() != null && !matches.isEmpty()) {
+            matches.and(recipeTextIndex.matchesInstructions(searchCriteria.getIncludeInstructions()));
+        }
+        return Optional.of(recipeSearchIndex.facets(matches, topIngredients));
+    }
+
+    /**
+     * Search the name and instructions of the recipes, best match first.
+     *
+     * @param text words and "quoted phrases", all of which must match
+     * @param size maximum number of recipes
+     * @return the best matching Recipes
+     */
+    @Transactional(readOnly = true)
+    public List<RecipeSummary> searchText(String text, int size) {
+        LOGGER.info("Search recipes text");
+        return lookupRanked(recipeTextIndex.rank(text, size));
+    }
+
+    /**
+     * Find the recipes whose ingredients are most similar to those of a recipe.
+     *
+     * @param recipeId recipe identifier
+     * @param size maximum number of recipes
+     * @return the most similar Recipes first
+     * @throws NoSuchElementException if no Recipe found.
+     */
+    @Transactional(readOnly = true)
+    public List<RecipeSummary> lookupSimilar(Long recipeId, int size) throws NoSuchElementException {
+        LOGGER.info("Lookup recipes similar to {}", recipeId);
+        if (!recipeSimilarityIndex.contains(recipeId) && !recipeRepository.existsById(recipeId)) {
+            throw new NoSuchElementException("Recipe does not exist " + recipeId);
+        }
+        return lookupRanked(recipeSimilarityIndex.similar(recipeId, size));
     }
 
     /**
@@ -109,4 +374,67 @@ public class RecipeService {
                 new NoSuchElementException("Recipe does not exist " + recipeId)
         );
     }
+
+    /**
+     * Load recipes in the order of their ids.
+     *
+     * @param ids recipe identifiers
+     * @return the RecipeSummaries of the recipes still existing
+     */
+    private List<RecipeSummary> lookupRanked(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, RecipeSummary> recipes = recipeRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(RecipeSummary::getRecipeId, Function.identity()));
+        return ids.stream().map(recipes::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Get the catalog entries of the ingredients of new recipes, with one lookup.
+     *
+     * @param recipeDtos recipeDtos
+     * @return the entry of every ingredient name
+     */
+    private Map<String, CatalogIngredient> resolveIngredients(List<RecipeDto> recipeDtos) {
+        List<String> names = new ArrayList<>();
+        for (RecipeDto recipeDto : recipeDtos) {
+            if (recipeDto.getIngredients() != null) {
+                recipeDto.getIngredients().forEach(ingredient -> names.add(ingredient.getName()));
+            }
+        }
+        return names.isEmpty() ? Collections.emptyMap() : ingredientCatalog.resolveAll(names);
+    }
+
+    /**
+     * Build a new recipe, and its ingredients pointing back to it and to their catalog entries.
+     *
+     * @param recipeDto recipeDto
+     * @param catalog catalog entries of the ingredient names
+     * @return the Recipe to save
+     */
+    private static Recipe toRecipe(RecipeDto recipeDto, Map<String, CatalogIngredient> catalog) {
+        Recipe recipe = new Recipe(recipeDto.getName(), recipeDto.getInstructions(), recipeDto.isContainsMeat(),
+                recipeDto.isVegan(), recipeDto.getNoOfServings(), new ArrayList<>());
+        if (recipeDto.getIngredients() != null) {
+            for (IngredientDto ingredient : recipeDto.getIngredients()) {
+                Ingredient added = new Ingredient(ingredient.getName(), ingredient.getMeasurement(), recipe);
+                added.setCatalogIngredient(catalog.get(ingredient.getName()));
+                recipe.getIngredients().add(added);
+            }
+        }
+        return recipe;
+    }
+
+    /**
+     * Build a Slice from the recipes fetched with one look-ahead element.
+     *
+     * @param recipes up to size + 1 recipes
+     * @param size requested slice size
+     * @return Slice of Recipes
+     */
+    private static Slice<RecipeSummary> toSlice(List<RecipeSummary> recipes, int size) {
+        boolean hasNext = recipes.size() > size;
+        return new SliceImpl<>(hasNext ? recipes.subList(0, size) : recipes, PageRequest.of(0, size), hasNext);
+    }
 }
\ No newline at end of file
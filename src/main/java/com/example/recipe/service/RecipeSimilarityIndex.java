@@ -0,0 +1,226 @@
+package com.example.recipe.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Locality-sensitive hashing index of the recipes by their ingredient names, to find similar recipes.
+ *
+ * Every recipe has a MinHash signature of its ingredient names, cut into bands; recipes sharing a band
+ * land in the same bucket, so recipes whose ingredient sets have a high Jaccard similarity are very
+ * likely to share at least one bucket while dissimilar ones rarely do. The candidates found in the buckets
+ * of a recipe are then ranked by their exact Jaccard similarity. A bucket shared by very many recipes, such as
+ * that of a very common set of ingredients, only gives up to MAX_BUCKET_CANDIDATES of them.
+ * The index follows the RecipeIndexEvents of the RecipeSearchIndex.
+ */
+@Component
+public class RecipeSimilarityIndex {
+    private static final int BANDS = 32;
+    private static final int ROWS = 4;
+    private static final int HASHES = BANDS * ROWS;
+    private static final long SEED = 0x5EED5EEDL;
+    static final int MAX_BUCKET_CANDIDATES = 100;
+
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final long[] hashSeeds = new long[HASHES];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Signature> signatures = new HashMap<>();
+    private final Map<Long, Set<Long>> buckets = new HashMap<>();
+
+    /**
+     * Construct RecipeSimilarityIndex
+     *
+     * @param recipeSearchIndex Recipe Search Index, the source of the ingredient names
+     */
+    @Autowired
+    public RecipeSimilarityIndex(RecipeSearchIndex recipeSearchIndex) {
+        this.recipeSearchIndex = recipeSearchIndex;
+        Random random = new Random(SEED);
+        for (int i = 0; i < HASHES; i++) {
+            hashSeeds[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Follow a change of the search index.
+     *
+     * @param event the change
+     */
+    @EventListener
+    public void onIndexChange(RecipeIndexEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isRebuild()) {
+                signatures.clear();
+                buckets.clear();
+                recipeSearchIndex.documents().forEach(this::add);
+                return;
+            }
+            if (event.getPrevious() != null) {
+                remove(event.getPrevious().getRecipeId());
+            }
+            if (event.getCurrent() != null) {
+                add(event.getCurrent());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param recipeId recipe identifier
+     * @return true if the recipe has ingredients in the index
+     */
+    public boolean contains(Long recipeId) {
+        lock.readLock().lock();
+        try {
+            return signatures.containsKey(recipeId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the recipes with the ingredients most similar to those of a recipe.
+     *
+     * @param recipeId recipe identifier
+     * @param limit maximum number of recipes
+     * @return recipe ids, most similar first
+     */
+    public List<Long> similar(Long recipeId, int limit) {
+        lock.readLock().lock();
+        try {
+            Signature signature = signatures.get(recipeId);
+            if (signature == null) {
+                return Collections.emptyList();
+            }
+            Set<Long> candidates = new HashSet<>();
+            for (long key : signature.bandKeys) {
+                int taken = 0;
+                for (Long candidate : buckets.get(key)) {
+                    if (taken++ == MAX_BUCKET_CANDIDATES) {
+                        break;
+                    }
+                    candidates.add(candidate);
+                }
+            }
+            candidates.remove(recipeId);
+
+            Map<Long, Double> similarities = new HashMap<>();
+            for (Long candidate : candidates) {
+                similarities.put(candidate, jaccard(signature.names, signatures.get(candidate).names));
+            }
+            List<Long> ranked = new ArrayList<>(candidates);
+            ranked.sort(Comparator.comparing((Long id) -> similarities.get(id)).reversed()
+                    .thenComparing(Comparator.naturalOrder()));
+            return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(RecipeDocument document) {
+        Set<String> names = document.names();
+        if (names.isEmpty()) {
+            return;
+        }
+        Signature signature = new Signature(names, bandKeys(minHash(names)));
+        signatures.put(document.getRecipeId(), signature);
+        for (long key : signature.bandKeys) {
+            buckets.computeIfAbsent(key, k -> new HashSet<>()).add(document.getRecipeId());
+        }
+    }
+
+    private void remove(Long recipeId) {
+        Signature signature = signatures.remove(recipeId);
+        if (signature == null) {
+            return;
+        }
+        for (long key : signature.bandKeys) {
+            Set<Long> bucket = buckets.get(key);
+            bucket.remove(recipeId);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @param names ingredient names
+     * @return for each hash function, the minimum hash over the names
+     */
+    private int[] minHash(Set<String> names) {
+        int[] minimums = new int[HASHES];
+        Arrays.fill(minimums, Integer.MAX_VALUE);
+        for (String name : names) {
+            long hash = mix(name.hashCode());
+            for (int i = 0; i < HASHES; i++) {
+                minimums[i] = Math.min(minimums[i], (int) mix(hash ^ hashSeeds[i]));
+            }
+        }
+        return minimums;
+    }
+
+    /**
+     * @param minHash MinHash signature
+     * @return the bucket key of every band of the signature
+     */
+    private static long[] bandKeys(int[] minHash) {
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            int hash = Arrays.hashCode(Arrays.copyOfRange(minHash, band * ROWS, (band + 1) * ROWS));
+            keys[band] = ((long) band << 32) | (hash & 0xFFFFFFFFL);
+        }
+        return keys;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        int common = 0;
+        for (String name : a) {
+            if (b.contains(name)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading the bits of a hash.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Ingredient names of a recipe and the buckets of its signature.
+     */
+    private static final class Signature {
+        private final Set<String> names;
+        private final long[] bandKeys;
+
+        private Signature(Set<String> names, long[] bandKeys) {
+            this.names = names;
+            this.bandKeys = bandKeys;
+        }
+    }
+}
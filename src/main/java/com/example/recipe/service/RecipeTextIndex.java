@@ -0,0 +1,363 @@
+package com.example.recipe.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeView;
+import com.example.recipe.repo.RecipeRepository;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Full-text index over the name and instructions of the recipes.
+ *
+ * The index is an embedded Lucene index in a temporary directory, independent of the database in use.
+ * It is rebuilt when the context is refreshed and updated by RecipeService on every recipe write; the
+ * searcher sees the updates without a commit, and the directory is dropped on close, so no index outlives
+ * the application to be reused or to fall behind the database.
+ * Queries are made of words, which must all match, and "quoted phrases"; hits are ranked with BM25,
+ * a match in the name weighing more than one in the instructions. The instructions filter of the searches
+ * matches the instructions only, as the database search does.
+ */
+@Component
+public class RecipeTextIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecipeTextIndex.class);
+    private static final String ID = "id";
+    private static final String NAME = "name";
+    private static final String INSTRUCTIONS = "instructions";
+    private static final float NAME_BOOST = 2.0f;
+    private static final int FETCH_SIZE = 1000;
+    private static final Pattern CLAUSE = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    private final RecipeRepository recipeRepository;
+    private final boolean enabled;
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private Path path;
+    private Directory directory;
+    private IndexWriter writer;
+    private volatile SearcherManager searcherManager;
+
+    /**
+     * Construct RecipeTextIndex
+     *
+     * @param recipeRepository Recipe Repository
+     * @param enabled false to leave searches to the database
+     */
+    @Autowired
+    public RecipeTextIndex(RecipeRepository recipeRepository,
+                           @Value("${recipe.search.index.enabled:true}") boolean enabled) {
+        this.recipeRepository = recipeRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Index every recipe, before the web server accepts requests.
+     * The recipes are scrolled as scalar rows, so no entity is loaded.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            open();
+            writer.deleteAll();
+            int[] count = new int[1];
+            recipeRepository.scrollSummaries(FETCH_SIZE, recipe -> {
+                try {
+                    writer.addDocument(toDocument(recipe));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+            LOGGER.info("Indexed the text of {} recipes in {}", count[0], path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return true once the index can answer searches
+     */
+    public boolean isReady() {
+        return searcherManager != null;
+    }
+
+    /**
+     * Add or replace the text of a recipe.
+     *
+     * @param recipe recipe
+     */
+    public void index(Recipe recipe) {
+        if (!isReady() || recipe == null) {
+            return;
+        }
+        try {
+            writer.updateDocument(new Term(ID, String.valueOf(recipe.getRecipeId())), toDocument(recipe));
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Add or replace the text of several recipes, refreshing the searcher once.
+     *
+     * @param recipes recipes
+     */
+    public void index(Collection<Recipe> recipes) {
+        if (!isReady() || recipes.isEmpty()) {
+            return;
+        }
+        try {
+            for (Recipe recipe : recipes) {
+                writer.updateDocument(new Term(ID, String.valueOf(recipe.getRecipeId())), toDocument(recipe));
+            }
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Remove the text of a recipe.
+     *
+     * @param recipeId recipe identifier
+     */
+    public void remove(Long recipeId) {
+        if (!isReady() || recipeId == null) {
+            return;
+        }
+        try {
+            writer.deleteDocuments(new Term(ID, String.valueOf(recipeId)));
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Find every recipe whose instructions match a text query.
+     *
+     * @param text words and "quoted phrases"
+     * @return a bitmap of the matching recipe ids, owned by the caller
+     */
+    public BitSet matchesInstructions(String text) {
+        IdCollector collector = new IdCollector();
+        search(searcher -> searcher.search(parse(text, false), collector));
+        return collector.ids;
+    }
+
+    /**
+     * Find the recipes best matching a text query.
+     *
+     * @param text words and "quoted phrases"
+     * @param limit maximum number of recipes
+     * @return recipe ids, best match first
+     */
+    public List<Long> rank(String text, int limit) {
+        List<Long> ids = new ArrayList<>();
+        search(searcher -> {
+            for (ScoreDoc hit : searcher.search(parse(text, true), limit).scoreDocs) {
+                ids.add(Long.valueOf(searcher.doc(hit.doc).get(ID)));
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Close the index and drop its directory.
+     *
+     * @throws IOException if the index cannot be closed
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (searcherManager == null) {
+            return;
+        }
+        searcherManager.close();
+        writer.close();
+        directory.close();
+        searcherManager = null;
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * Build the query of a text: every word and phrase must match the instructions, or the name.
+     *
+     * @param text words and "quoted phrases"
+     * @param withName true to match the names as well as the instructions
+     * @return the Lucene query, matching everything when the text has no searchable word
+     */
+    Query parse(String text, boolean withName) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        boolean empty = true;
+        Matcher matcher = CLAUSE.matcher(text);
+        while (matcher.find()) {
+            String clause = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            Query instructions = toQuery(INSTRUCTIONS, clause);
+            if (instructions == null) {
+                continue;
+            }
+            if (withName) {
+                instructions = new BooleanQuery.Builder()
+                        .add(new BoostQuery(toQuery(NAME, clause), NAME_BOOST), BooleanClause.Occur.SHOULD)
+                        .add(instructions, BooleanClause.Occur.SHOULD)
+                        .build();
+            }
+            query.add(instructions, BooleanClause.Occur.MUST);
+            empty = false;
+        }
+        return empty ? new MatchAllDocsQuery() : query.build();
+    }
+
+    private Query toQuery(String field, String clause) {
+        PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+        Term first = null;
+        int terms = 0;
+        try (TokenStream tokens = analyzer.tokenStream(field, clause)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute increment = tokens.addAttribute(PositionIncrementAttribute.class);
+            tokens.reset();
+            int position = -1;
+            while (tokens.incrementToken()) {
+                position += increment.getPositionIncrement();
+                Term token = new Term(field, term.toString());
+                phrase.add(token, position);
+                first = first == null ? token : first;
+                terms++;
+            }
+            tokens.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (terms == 0) {
+            return null;
+        }
+        return terms == 1 ? new TermQuery(first) : phrase.build();
+    }
+
+    private void open() throws IOException {
+        if (searcherManager != null) {
+            return;
+        }
+        path = Files.createTempDirectory("recipe-fulltext");
+        directory = FSDirectory.open(path);
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        searcherManager = new SearcherManager(writer, null);
+    }
+
+    private void search(SearcherCallback callback) {
+        if (!isReady()) {
+            throw new IllegalStateException("The full-text index is not available");
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                callback.search(searcher);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Document toDocument(RecipeView recipe) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(recipe.getRecipeId()), Field.Store.YES));
+        document.add(new NumericDocValuesField(ID, recipe.getRecipeId()));
+        document.add(new TextField(NAME, nullToEmpty(recipe.getName()), Field.Store.NO));
+        document.add(new TextField(INSTRUCTIONS, nullToEmpty(recipe.getInstructions()), Field.Store.NO));
+        return document;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    @FunctionalInterface
+    private interface SearcherCallback {
+        void search(IndexSearcher searcher) throws IOException;
+    }
+
+    /**
+     * Collect the recipe ids of all hits, without scoring them.
+     */
+    private static final class IdCollector extends SimpleCollector {
+        private final BitSet ids = new BitSet();
+        private NumericDocValues values;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            values = DocValues.getNumeric(context.reader(), ID);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (values.advanceExact(doc)) {
+                ids.set(Math.toIntExact(values.longValue()));
+            }
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.recipe.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Async Configuration
+ *
+ * Streamed responses, the recipe export, are written by a bounded pool rather than a thread per request.
+ * The other slow handlers run on the pool of AsyncRequests.
+ */
+@Configuration
+public class AsyncConfiguration implements WebMvcConfigurer {
+    private final ThreadPoolTaskExecutor streamingExecutor;
+
+    /**
+     * Construct AsyncConfiguration
+     *
+     * @param streamingExecutor writer of the streamed responses
+     */
+    public AsyncConfiguration(ThreadPoolTaskExecutor streamingExecutor) {
+        this.streamingExecutor = streamingExecutor;
+    }
+
+    /**
+     * Writers of the streamed responses; an export is rejected with 503 when all are busy and the queue is full.
+     *
+     * @param poolSize number of exports written at a time
+     * @param queueCapacity number of exports waiting for a writer
+     * @return the executor
+     */
+    @Bean
+    public static ThreadPoolTaskExecutor streamingExecutor(@Value("${recipe.export.pool-size:4}") int poolSize,
+                                                           @Value("${recipe.export.queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("recipe-export-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor);
+    }
+}
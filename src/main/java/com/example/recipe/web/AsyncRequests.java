@@ -0,0 +1,103 @@
+package com.example.recipe.web;
+
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import com.example.recipe.repo.PersistenceConfiguration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Run the database-bound handlers of the controllers on a bounded pool of their own, so that a burst of
+ * slow searches or batch writes does not hold the container threads the cheap requests need.
+ *
+ * A request is rejected when every worker is busy and the queue is full, and times out when it is not
+ * answered in time; a request that times out in the queue is never run, and a running one is interrupted.
+ * ExceptionHandlerController answers both with 503 and Retry-After. Every worker may hold a database
+ * connection, so the pool is no larger than the connection pool.
+ *
+ * The container may recycle a request as soon as its thread returns, so the handlers read what they need of
+ * it, such as the base of their links, before they are submitted. The client of the request is carried over
+ * to the worker, for the routing of its reads and writes.
+ */
+@Component
+public class AsyncRequests {
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final long timeoutMillis;
+
+    /**
+     * Construct AsyncRequests
+     *
+     * @param poolSize number of workers
+     * @param queueCapacity number of requests waiting for a worker
+     * @param timeoutMillis milliseconds before a request is answered with 503
+     * @param connections size of the connection pool, the maximum number of workers
+     */
+    @Autowired
+    public AsyncRequests(@Value("${recipe.async.pool-size:16}") int poolSize,
+                         @Value("${recipe.async.queue-capacity:200}") int queueCapacity,
+                         @Value("${recipe.async.timeout-ms:30000}") long timeoutMillis,
+                         @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connections) {
+        this.timeoutMillis = timeoutMillis;
+        executor.setCorePoolSize(Math.min(poolSize, connections));
+        executor.setMaxPoolSize(Math.min(poolSize, connections));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("recipe-async-");
+        executor.setTaskDecorator(AsyncRequests::asClient);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+    }
+
+    /**
+     * Run a handler on the pool.
+     *
+     * @param handler handler, which does not read the request
+     * @param <T> result type
+     * @return the result of the handler, or its exception
+     * @throws TaskRejectedException if the pool and its queue are full
+     */
+    public <T> DeferredResult<T> submit(Supplier<T> handler) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMillis);
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.setResult(handler.get());
+            } catch (RuntimeException e) {
+                result.setErrorResult(e);
+            }
+        });
+        result.onTimeout(() -> task.cancel(true));
+        return result;
+    }
+
+    /**
+     * Stop the workers once the requests in progress are answered.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Run a task as the client of the request that submits it.
+     *
+     * @param task task
+     * @return the task run as the client of its caller
+     */
+    private static Runnable asClient(Runnable task) {
+        Object client = PersistenceConfiguration.client();
+        if (client == null) {
+            return task;
+        }
+        return () -> PersistenceConfiguration.runAs(client, () -> {
+            task.run();
+            return null;
+        });
+    }
+}
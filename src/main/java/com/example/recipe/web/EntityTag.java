@@ -0,0 +1,53 @@
+package com.example.recipe.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * Strong entity tags derived from the version of an entity, so that they can be checked without
+ * loading or serializing it.
+ */
+final class EntityTag {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityTag.class);
+
+    private EntityTag() {
+    }
+
+    /**
+     * Build the entity tag of a representation.
+     *
+     * @param version version of the entity
+     * @param variant variant of the representation, e.g. the embedded relations, null for the plain one
+     * @return quoted entity tag
+     */
+    static String of(long version, String variant) {
+        return "\"" + version + (variant == null ? "" : "-" + variant) + "\"";
+    }
+
+    /**
+     * Read the version an If-Match header expects.
+     *
+     * @param ifMatch header value, may be absent
+     * @return the version, null when the header is absent or matches any version
+     * @throws HttpServerErrorException 412 if the header holds no entity tag of this service
+     */
+    static Long version(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String value = tag.substring(1, tag.length() - 1);
+            int variant = value.indexOf('-');
+            try {
+                return Long.valueOf(variant < 0 ? value : value.substring(0, variant));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Unknown entity tag {}", ifMatch, e);
+            }
+        }
+        throw new HttpServerErrorException(HttpStatus.PRECONDITION_FAILED, "Unknown entity tag " + ifMatch);
+    }
+}
@@ -5,6 +5,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.web.servlet.error.DefaultErrorAttributes;
 import org.springframework.boot.web.servlet.error.ErrorAttributes;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
@@ -12,6 +15,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -23,6 +27,7 @@ import java.util.Map;
 @RestControllerAdvice
 public class ExceptionHandlerController {
     private static final Logger LOGGER = LoggerFactory.getLogger(ExceptionHandlerController.class);
+    private static final String RETRY_AFTER_SECONDS = "5";
 
 
     @Bean
@@ -49,6 +54,25 @@ public class ExceptionHandlerController {
         res.sendError(ex.getStatusCode().value(),ex.getMessage());
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public void handleOptimisticLockingFailureException(OptimisticLockingFailureException ex, HttpServletResponse res) throws IOException {
+        res.sendError(HttpStatus.PRECONDITION_FAILED.value(), "The resource was modified");
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public void handleTaskRejectedException(TaskRejectedException ex, HttpServletResponse res) throws IOException {
+        LOGGER.warn("Rejected a request, the workers and their queue are full");
+        res.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        res.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many requests in progress");
+    }
+
+    @ExceptionHandler(AsyncRequestTimeoutException.class)
+    public void handleAsyncRequestTimeoutException(AsyncRequestTimeoutException ex, HttpServletResponse res) throws IOException {
+        LOGGER.warn("A request timed out");
+        res.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        res.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "The request timed out");
+    }
+
     @ExceptionHandler(InsufficientAuthenticationException.class)
     public void handleInsufficientAuthenticationException(InsufficientAuthenticationException ex, HttpServletResponse res) throws IOException {
         LOGGER.error("Handled Insufficient Authentication Exception", ex);
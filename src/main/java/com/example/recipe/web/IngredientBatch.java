@@ -0,0 +1,24 @@
+package com.example.recipe.web;
+
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Ingredients of a recipe created together by POST /recipes/{recipeId}/ingredients/batch,
+ * or replacing its ingredient list by PUT /recipes/{recipeId}/ingredients.
+ */
+@Getter
+@Setter
+public class IngredientBatch {
+
+    @Valid
+    @NotNull
+    @Size(max = 1000)
+    private List<IngredientDto> ingredients;
+}
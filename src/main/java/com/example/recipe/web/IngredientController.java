@@ -1,8 +1,11 @@
 package com.example.recipe.web;
 
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import com.example.recipe.domain.Ingredient;
+import com.example.recipe.service.IngredientCompletion;
 import com.example.recipe.service.IngredientService;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -11,6 +14,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -18,8 +23,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Ingredient Controller
@@ -30,6 +38,7 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping(path = "/ingredients/")
 public class IngredientController {
     private static final Logger LOGGER = LoggerFactory.getLogger(IngredientController.class);
+    private static final int MAX_COMPLETIONS = 10;
     private final IngredientService ingredientService;
     private final IngredientAssembler assembler;
 
@@ -45,14 +54,18 @@ public class IngredientController {
      * Update name and measurement of an ingredient
      *
      * @param ingredientId ingredientId
+     * @param ifMatch entity tag the client last read, absent to overwrite any version
      * @param ingredientDto ingredientDto
      * @return The modified Ingredient Dto
      */
     @PutMapping("/{ingredientId}")
     @PreAuthorize("hasRole('ROLE_CSR')")
-    public IngredientDto updateWithPut(@PathVariable(value = "ingredientId") Long ingredientId, @RequestBody @Validated IngredientDto ingredientDto) {
+    public ResponseEntity<IngredientDto> updateWithPut(@PathVariable(value = "ingredientId") Long ingredientId,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                       @RequestBody @Validated IngredientDto ingredientDto) {
         LOGGER.info("PUT ingredients/{}", ingredientId);
-        return toDto(ingredientService.update(ingredientId, ingredientDto));
+        Ingredient ingredient = ingredientService.update(ingredientId, ingredientDto, EntityTag.version(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTag.of(ingredient.getVersion(), null)).body(toDto(ingredient));
     }
 
     /**
@@ -67,12 +80,44 @@ public class IngredientController {
         ingredientService.deleteById(ingredientId);
     }
 
+    /**
+     * Complete the start of an ingredient name, for use in the search criteria.
+     *
+     * @param prefix start of an ingredient name
+     * @param size number of names, capped at 10
+     * @return the ingredient names used by the most recipes first
+     */
+    @GetMapping("/autocomplete")
+    public List<IngredientCompletion> autocomplete(@RequestParam("prefix") String prefix,
+                                                   @RequestParam(value = "size", defaultValue = "10") int size) {
+        LOGGER.info("GET /ingredients/autocomplete");
+        return ingredientService.autocomplete(prefix, Math.max(1, Math.min(size, MAX_COMPLETIONS)));
+    }
+
+    /**
+     * Get several ingredients in one request, with an IN query per 500 ids.
+     *
+     * @param ids ingredient identifiers, up to 1000
+     * @return the ingredients found in the order of the ids, and the ids not found
+     */
+    @GetMapping(params = "ids")
+    public MultiGetResponse<IngredientDto> getIngredients(@RequestParam("ids") List<Long> ids) {
+        LOGGER.info("GET /ingredients/?ids= of {}", ids.size());
+        Set<Long> distinct = MultiGetResponse.distinct(ids);
+        return MultiGetResponse.of(distinct, ingredientService.lookupIngredientsByIds(distinct), this::toDto);
+    }
+
     @GetMapping("/{id}")
     @ApiOperation(value = "Find ingredient by id")
     @ApiResponses(value = { @ApiResponse(code = 200, message = "OK"), @ApiResponse(code = 404, message = "Ingredient not found") })
     public IngredientDto getIngredient(
-            @PathVariable("id") Long id) {
+            @PathVariable("id") Long id, WebRequest request) {
         LOGGER.info("GET /ingredients/{} ", id);
+        long version = ingredientService.lookupVersion(id)
+                .orElseThrow(() -> new NoSuchElementException("Ingredient " + id + " not found"));
+        if (request.checkNotModified(EntityTag.of(version, null))) {
+            return null;
+        }
         return assembler.toResource(ingredientService.lookupIngredientById(id)
                 .orElseThrow(() -> new NoSuchElementException("Ingredient " + id + " not found"))
         );
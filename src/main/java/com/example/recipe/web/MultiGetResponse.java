@@ -0,0 +1,79 @@
+package com.example.recipe.web;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import lombok.Getter;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * Resources fetched together by a list of ids, in the order of the ids, and the ids not found.
+ *
+ * @param <T> resource type
+ */
+@Getter
+public class MultiGetResponse<T> {
+    static final int MAX_IDS = 1000;
+
+    private final List<T> content;
+
+    /**
+     * Requested ids with no resource, omitted when all were found.
+     */
+    private final List<Long> missing;
+
+    /**
+     * Constructor to fully initialize the MultiGetResponse
+     *
+     * @param content resources found
+     * @param missing ids not found
+     */
+    public MultiGetResponse(List<T> content, List<Long> missing) {
+        this.content = content;
+        this.missing = missing;
+    }
+
+    /**
+     * Check the ids of a request and drop the repeated ones.
+     *
+     * @param ids requested ids
+     * @return the distinct ids, in the order of their first request
+     * @throws HttpServerErrorException 400 unless there are between 1 and 1000 ids
+     */
+    static Set<Long> distinct(List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_IDS) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "Between 1 and " + MAX_IDS + " ids");
+        }
+        return new LinkedHashSet<>(ids);
+    }
+
+    /**
+     * Assemble the entities found, in the order of the ids.
+     *
+     * @param ids requested ids
+     * @param found entities found, by id
+     * @param assembler converts an entity to its resource
+     * @param <E> entity type
+     * @param <T> resource type
+     * @return the response
+     */
+    static <E, T> MultiGetResponse<T> of(Set<Long> ids, Map<Long, E> found, Function<E, T> assembler) {
+        List<T> content = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            E entity = found.get(id);
+            if (entity == null) {
+                missing.add(id);
+            } else {
+                content.add(assembler.apply(entity));
+            }
+        }
+        return new MultiGetResponse<>(content, missing);
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.recipe.web;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.example.recipe.domain.PartialRecipe;
 import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeView;
 
 import org.springframework.data.rest.webmvc.support.RepositoryEntityLinks;
 import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkBuilder;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
 
@@ -13,29 +19,99 @@ import org.springframework.stereotype.Component;
  * Created by vashisthsoni.
  */
 @Component
-public class RecipeAssembler extends ResourceAssemblerSupport<Recipe,RecipeDto> {
+public class RecipeAssembler extends ResourceAssemblerSupport<RecipeView,RecipeDto> {
 
     private final RepositoryEntityLinks entityLinks;
+    private final IngredientAssembler ingredientAssembler;
 
-    public RecipeAssembler( RepositoryEntityLinks entityLinks) {
+    public RecipeAssembler( RepositoryEntityLinks entityLinks, IngredientAssembler ingredientAssembler) {
         super(RecipeController.class, RecipeDto.class);
         this.entityLinks = entityLinks;
+        this.ingredientAssembler = ingredientAssembler;
     }
 
     /**
      *  Generates "self", "ingredient" and recipe links
      *
-     * @param recipe recipe Entity
+     * @param recipe recipe Entity or projection
      * @return recipeDto recipeDto
      */
     @Override
-    public RecipeDto toResource(Recipe recipe) {
+    public RecipeDto toResource(RecipeView recipe) {
+        return toResource(recipe, recipeLinks());
+    }
+
+    /**
+     * Same as toResource, with the links built from the base link of the recipes.
+     *
+     * @param recipe recipe Entity or projection
+     * @param recipeLinks base link of the recipes, from recipeLinks
+     * @return recipeDto recipeDto
+     */
+    public RecipeDto toResource(RecipeView recipe, LinkBuilder recipeLinks) {
         RecipeDto recipeDto = new RecipeDto(recipe.getName(), recipe.getInstructions(), recipe.isVegan(), recipe.isContainsMeat(), recipe.getNoOfServings());
 
         //"recipe" : ".../recipes/{recipeId}"
-        Link recipeLink = entityLinks.linkToSingleResource(Recipe.class, recipe.getRecipeId());
-        recipeDto.add(recipeLink.withRel("recipe"));
+        Link recipeLink = recipeLinks.slash(recipe.getRecipeId()).withRel("recipe");
+        recipeDto.add(recipeLink);
         return recipeDto;
     }
 
+    /**
+     * Same as toResources, with the links built from the base link of the recipes.
+     *
+     * @param recipes recipe Entities or projections
+     * @param recipeLinks base link of the recipes, from recipeLinks
+     * @return recipeDtos recipeDtos
+     */
+    public List<RecipeDto> toResources(List<? extends RecipeView> recipes, LinkBuilder recipeLinks) {
+        return recipes.stream().map(recipe -> toResource(recipe, recipeLinks)).collect(Collectors.toList());
+    }
+
+    /**
+     * Same as toResource, with the ingredients of the recipe embedded.
+     *
+     * @param recipe recipe Entity, its ingredients loaded
+     * @return recipeDto recipeDto
+     */
+    public RecipeDto toResourceWithIngredients(Recipe recipe) {
+        RecipeDto recipeDto = toResource(recipe);
+        recipeDto.setIngredients(ingredientAssembler.toResources(recipe.getIngredients()));
+        return recipeDto;
+    }
+
+    /**
+     * Same as toResource, with only the selected fields of the recipe.
+     *
+     * @param recipe selected fields of a recipe
+     * @return sparseRecipeDto sparseRecipeDto
+     */
+    public SparseRecipeDto toSparseResource(PartialRecipe recipe) {
+        return toSparseResource(recipe, recipeLinks());
+    }
+
+    /**
+     * Same as toSparseResource, with the links built from the base link of the recipes.
+     *
+     * @param recipe selected fields of a recipe
+     * @param recipeLinks base link of the recipes, from recipeLinks
+     * @return sparseRecipeDto sparseRecipeDto
+     */
+    public SparseRecipeDto toSparseResource(PartialRecipe recipe, LinkBuilder recipeLinks) {
+        SparseRecipeDto recipeDto = new SparseRecipeDto();
+        recipe.getValues().forEach((field, value) -> recipeDto.put(field.getFieldName(), value));
+        recipeDto.add(recipeLinks.slash(recipe.getRecipeId()).withRel("recipe"));
+        return recipeDto;
+    }
+
+    /**
+     * The base link of the recipes is read from the current request. Read it on the request thread to build
+     * the links of the handlers that run on the pool of AsyncRequests, where there is no request.
+     *
+     * @return the link of the recipe resources, ".../recipes"
+     */
+    public LinkBuilder recipeLinks() {
+        return entityLinks.linkFor(Recipe.class);
+    }
+
 }
\ No newline at end of file
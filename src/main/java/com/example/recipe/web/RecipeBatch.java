@@ -0,0 +1,23 @@
+package com.example.recipe.web;
+
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Recipes created together by POST /recipes/batch.
+ */
+@Getter
+@Setter
+public class RecipeBatch {
+
+    @Valid
+    @NotEmpty
+    @Size(max = 1000)
+    private List<RecipeDto> recipes;
+}
@@ -1,18 +1,25 @@
 package com.example.recipe.web;
 
-import java.util.ArrayList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
 
-import javax.persistence.EntityManager;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Join;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
-
-import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.PartialRecipe;
 import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeField;
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.service.RecipeExportService;
+import com.example.recipe.service.RecipeFacets;
+import com.example.recipe.service.RecipeResponseCache;
+import com.example.recipe.service.RecipeResponseCache.SerializedResponse;
 import com.example.recipe.service.RecipeService;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -20,7 +27,17 @@ import io.swagger.annotations.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.hateoas.LinkBuilder;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -29,9 +46,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponents;
 
 /**
  * Recipe Controller
@@ -42,17 +68,38 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping(path = "/recipes/")
 public class RecipeController {
     private static final Logger LOGGER = LoggerFactory.getLogger(RecipeController.class);
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String INCLUDE_INGREDIENTS = "ingredients";
+    private static final String GZIP = "gzip";
 
     private final RecipeService recipeService;
 
+    private final RecipeExportService recipeExportService;
+
     private final RecipeAssembler assembler;
 
-    private final EntityManager entityManager;
+    private final RecipeResponseCache recipeResponseCache;
+
+    private final RequestMappingHandlerAdapter handlerAdapter;
+
+    private final AsyncRequests asyncRequests;
+
+    private final Set<String> cachedHosts;
 
-    public RecipeController(RecipeService recipeService, RecipeAssembler assembler, EntityManager entityManager) {
+    public RecipeController(RecipeService recipeService, RecipeExportService recipeExportService,
+                            RecipeAssembler assembler, RecipeResponseCache recipeResponseCache,
+                            @Qualifier("requestMappingHandlerAdapter") RequestMappingHandlerAdapter handlerAdapter,
+                            AsyncRequests asyncRequests,
+                            @Value("${recipe.response.cache.hosts:localhost}") String[] cachedHosts) {
         this.recipeService = recipeService;
+        this.recipeExportService = recipeExportService;
         this.assembler = assembler;
-        this.entityManager = entityManager;
+        this.recipeResponseCache = recipeResponseCache;
+        this.handlerAdapter = handlerAdapter;
+        this.asyncRequests = asyncRequests;
+        this.cachedHosts = Arrays.stream(cachedHosts).map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .filter(host -> !host.isEmpty()).collect(Collectors.toSet());
     }
 
     /**
@@ -68,15 +115,119 @@ public class RecipeController {
         recipeService.createNew(recipeDto);
     }
 
+    /**
+     * Create Recipes and their ingredients in bulk.
+     *
+     * @param recipeBatch up to 1000 recipes
+     * @return completed once the recipes are created
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ROLE_CSR')")
+    @ResponseStatus(HttpStatus.CREATED)
+    public DeferredResult<Void> createRecipes(@RequestBody @Validated RecipeBatch recipeBatch) {
+        LOGGER.info("POST /recipes/batch of {}", recipeBatch.getRecipes().size());
+        return asyncRequests.submit(() -> {
+            recipeService.createAll(recipeBatch.getRecipes());
+            return null;
+        });
+    }
+
+    /**
+     * Export every recipe with its ingredients as newline delimited JSON, streamed as it is read.
+     *
+     * @return one recipe per line
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        LOGGER.info("GET /recipes/export");
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(recipeExportService::export);
+    }
+
+    /**
+     * Get several recipes in one request, with an IN query per 500 ids.
+     *
+     * @param ids recipe identifiers, up to 1000
+     * @param fields comma separated fields to return, absent for all of them
+     * @return the recipes found in the order of the ids, and the ids not found
+     */
+    @GetMapping(params = "ids")
+    public DeferredResult<MultiGetResponse<? extends ResourceSupport>> getRecipes(
+            @RequestParam("ids") List<Long> ids,
+            @RequestParam(value = "fields", required = false) String fields) {
+        LOGGER.info("GET /recipes/?ids= of {}", ids.size());
+        Set<Long> distinct = MultiGetResponse.distinct(ids);
+        Set<RecipeField> projection = parseFields(fields);
+        LinkBuilder recipeLinks = assembler.recipeLinks();
+        if (projection != null) {
+            return asyncRequests.submit(() -> MultiGetResponse.of(distinct,
+                    recipeService.lookupRecipeFields(distinct, projection),
+                    recipe -> assembler.toSparseResource(recipe, recipeLinks)));
+        }
+        return asyncRequests.submit(() -> MultiGetResponse.of(distinct, recipeService.lookupRecipeSummaries(distinct),
+                recipe -> assembler.toResource(recipe, recipeLinks)));
+    }
+
+    /**
+     * Get a recipe, served from the cache of serialized responses while its version is unchanged,
+     * gzipped when the client accepts it.
+     *
+     * @param id recipe identifier
+     * @param include "ingredients" to embed the ingredients of the recipe
+     * @param fields comma separated fields to return, absent for all of them, not with include
+     * @param request request, answered with 304 when its entity tag is current
+     * @return the serialized recipe
+     */
     @GetMapping("/{id}")
-    @ApiOperation(value = "Find recipes by id")
+    @ApiOperation(value = "Find recipes by id", response = RecipeDto.class)
     @ApiResponses(value = { @ApiResponse(code = 200, message = "OK"), @ApiResponse(code = 404, message = "Recipe not found") })
-    public RecipeDto getRecipe(
-            @PathVariable("id") Long id) {
+    public ResponseEntity<byte[]> getRecipe(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "include", required = false) String include,
+            @RequestParam(value = "fields", required = false) String fields,
+            WebRequest request) {
         LOGGER.info("GET /recipes/{} ", id);
-        return assembler.toResource(recipeService.lookupRecipeById(id)
-                .orElseThrow(() -> new NoSuchElementException("Recipe " + id + " not found"))
-        );
+        if (include != null && !INCLUDE_INGREDIENTS.equals(include)) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "Unknown include " + include);
+        }
+        Set<RecipeField> projection = parseFields(fields);
+        if (projection != null && include != null) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "fields cannot be combined with include");
+        }
+        long version = recipeService.lookupVersion(id)
+                .orElseThrow(() -> new NoSuchElementException("Recipe " + id + " not found"));
+        String representation = projection == null ? include : "fields." + projection.stream()
+                .map(RecipeField::getFieldName).collect(Collectors.joining("."));
+        if (request.checkNotModified(EntityTag.of(version, representation))) {
+            return null;
+        }
+        String variant = responseVariant(representation);
+        SerializedResponse response = recipeResponseCache.get(id, version, variant,
+                () -> serialize(projection == null ? lookupRecipe(id, include) : lookupRecipeFields(id, projection)));
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (response.getGzipped() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return ok.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(response.getGzipped());
+        }
+        return ok.body(response.getBody());
+    }
+
+    /**
+     * Find the recipes whose ingredients are most similar to those of a recipe.
+     *
+     * @param id recipe identifier
+     * @param size number of recipes, capped at 100
+     * @return the most similar recipes first
+     */
+    @GetMapping("/{id}/similar")
+    public DeferredResult<RecipeSearchPage> getSimilarRecipes(@PathVariable("id") Long id,
+                                                              @RequestParam(value = "size", defaultValue = "10") int size) {
+        LOGGER.info("GET /recipes/{}/similar", id);
+        LinkBuilder recipeLinks = assembler.recipeLinks();
+        return asyncRequests.submit(() -> new RecipeSearchPage(assembler.toResources(
+                recipeService.lookupSimilar(id, Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE))), recipeLinks), null));
     }
 
     /**
@@ -95,49 +246,193 @@ public class RecipeController {
      * Update recipe by recipe id.
      *
      * @param recipeId recipeId
+     * @param ifMatch entity tag the client last read, absent to overwrite any version
      * @param recipeDto recipeDto
      * @return The modified Recipe
      */
     @PutMapping("/{recipeId}")
     // @PreAuthorize("hasRole('ROLE_CSR')")
-    public RecipeDto updateWithPut(@PathVariable(value = "recipeId") Long recipeId, @RequestBody @Validated RecipeDto recipeDto) {
+    public ResponseEntity<RecipeDto> updateWithPut(@PathVariable(value = "recipeId") Long recipeId,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody @Validated RecipeDto recipeDto) {
         LOGGER.info("PUT /recipe/{}", recipeId);
-        return toDto(recipeService.update(recipeId, recipeDto));
+        Recipe recipe = recipeService.update(recipeId, recipeDto, EntityTag.version(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTag.of(recipe.getVersion(), null)).body(toDto(recipe));
     }
 
+    /**
+     * Search recipes, one page at a time.
+     *
+     * @param searchCriteria searchCriteria
+     * @param cursor next cursor of the previous page, absent for the first page
+     * @param size page size, capped at 100
+     * @param fields comma separated fields to return, absent for all of them
+     * @return a page of the matching recipes
+     */
     @PostMapping("/search")
-    public List<Recipe> searchRecipes(@RequestBody RecipeSearchCriteria searchCriteria) {
-        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Recipe> query = builder.createQuery(Recipe.class);
-        Root<Recipe> root = query.from(Recipe.class);
+    public DeferredResult<RecipeSearchPage> searchRecipes(@RequestBody RecipeSearchCriteria searchCriteria,
+                                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                                          @RequestParam(value = "size", defaultValue = "20") int size,
+                                                          @RequestParam(value = "fields", required = false) String fields) {
+        LOGGER.info("POST /recipes/search");
+        searchCriteria.validate();
+        Long after = SearchCursor.decode(cursor);
+        Set<RecipeField> projection = parseFields(fields);
+        int pageSize = Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+        LinkBuilder recipeLinks = assembler.recipeLinks();
+        if (projection != null) {
+            return asyncRequests.submit(() -> {
+                Slice<PartialRecipe> slice = recipeService.search(searchCriteria, after, pageSize, projection);
+                List<PartialRecipe> recipes = slice.getContent();
+                return new RecipeSearchPage(recipes.stream().map(recipe -> assembler.toSparseResource(recipe, recipeLinks))
+                        .collect(Collectors.toList()),
+                        slice.hasNext() ? SearchCursor.encode(recipes.get(recipes.size() - 1).getRecipeId()) : null);
+            });
+        }
+        return asyncRequests.submit(() -> {
+            Slice<RecipeSummary> slice = recipeService.search(searchCriteria, after, pageSize);
+            List<RecipeSummary> recipes = slice.getContent();
+            return new RecipeSearchPage(assembler.toResources(recipes, recipeLinks),
+                    slice.hasNext() ? SearchCursor.encode(recipes.get(recipes.size() - 1).getRecipeId()) : null);
+        });
+    }
 
-        List<Predicate> predicates = new ArrayList<>();
+    /**
+     * Count the recipes matching a search per value of every filter.
+     *
+     * @param searchCriteria searchCriteria
+     * @param ingredients number of ingredients to count, the most used first, capped at 100
+     * @return the counts of the matching recipes
+     */
+    @PostMapping("/search/facets")
+    public DeferredResult<RecipeFacets> searchFacets(@RequestBody RecipeSearchCriteria searchCriteria,
+                                                     @RequestParam(value = "ingredients", defaultValue = "10") int ingredients) {
+        LOGGER.info("POST /recipes/search/facets");
+        searchCriteria.validate();
+        return asyncRequests.submit(() ->
+                recipeService.facets(searchCriteria, Math.max(0, Math.min(ingredients, MAX_SEARCH_PAGE_SIZE)))
+                        .orElseThrow(() -> new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE,
+                                "Search facets are not available")));
+    }
 
-        if (searchCriteria.isVegetarian()) {
-            predicates.add(builder.equal(root.get("isVegan"), true));
-        }
+    /**
+     * Search the name and instructions of the recipes, best match first.
+     *
+     * @param text words and "quoted phrases", all of which must match
+     * @param size number of recipes, capped at 100
+     * @return the best matching recipes
+     */
+    @GetMapping("/search/text")
+    public DeferredResult<RecipeSearchPage> searchRecipesText(@RequestParam("q") String text,
+                                                              @RequestParam(value = "size", defaultValue = "20") int size) {
+        LOGGER.info("GET /recipes/search/text");
+        LinkBuilder recipeLinks = assembler.recipeLinks();
+        return asyncRequests.submit(() -> new RecipeSearchPage(assembler.toResources(
+                recipeService.searchText(text, Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE))), recipeLinks), null));
+    }
 
-        if (searchCriteria.getServes() != null) {
-            predicates.add(builder.equal(root.get("noOfServings"), searchCriteria.getServes()));
+    private RecipeDto lookupRecipe(Long id, String include) {
+        if (include != null) {
+            return assembler.toResourceWithIngredients(recipeService.lookupRecipeWithIngredients(id)
+                    .orElseThrow(() -> new NoSuchElementException("Recipe " + id + " not found")));
         }
+        return assembler.toResource(recipeService.lookupRecipeSummaryById(id)
+                .orElseThrow(() -> new NoSuchElementException("Recipe " + id + " not found"))
+        );
+    }
 
-        if (searchCriteria.getIngredientName() != null) {
-            Join<Recipe, Ingredient> ingredientJoin = root.join("ingredients");
-            predicates.add(builder.equal(ingredientJoin.get("name"), searchCriteria.getIngredientName()));
+    private SparseRecipeDto lookupRecipeFields(Long id, Set<RecipeField> fields) {
+        PartialRecipe recipe = recipeService.lookupRecipeFields(Collections.singleton(id), fields).get(id);
+        if (recipe == null) {
+            throw new NoSuchElementException("Recipe " + id + " not found");
         }
+        return assembler.toSparseResource(recipe);
+    }
 
-        if (searchCriteria.getExcludeIngredients() != null) {
-            Join<Recipe, Ingredient> ingredientJoin = root.join("ingredients");
-            predicates.add(builder.notEqual(ingredientJoin.get("name"), searchCriteria.getExcludeIngredients()));
+    /**
+     * @param fields comma separated field names, null when absent
+     * @return the fields, null to return all of them
+     * @throws HttpServerErrorException 400 if a name is not a field of a recipe
+     */
+    private static Set<RecipeField> parseFields(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        try {
+            return RecipeField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
+    }
 
-        if (searchCriteria.getIncludeInstructions() != null) {
-            predicates.add(builder.like(root.get("instructions"), "%" + searchCriteria.getIncludeInstructions() + "%"));
+    /**
+     * Serialize a recipe with the converter Spring MVC would write it with.
+     *
+     * @param recipeDto recipeDto or sparseRecipeDto
+     * @return the JSON body
+     */
+    @SuppressWarnings("unchecked")
+    private byte[] serialize(ResourceSupport recipeDto) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpOutputMessage message = new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public OutputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+        for (HttpMessageConverter<?> converter : handlerAdapter.getMessageConverters()) {
+            if (converter.canWrite(recipeDto.getClass(), MediaType.APPLICATION_JSON)) {
+                try {
+                    ((HttpMessageConverter<Object>) converter).write(recipeDto, MediaType.APPLICATION_JSON, message);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return body.toByteArray();
+            }
         }
+        throw new IllegalStateException("No JSON converter of " + recipeDto.getClass());
+    }
 
-        query.where(builder.and(predicates.toArray(new Predicate[0])));
+    /**
+     * The links are absolute, so the base URL the client used is part of a response. Its scheme and host are
+     * compared ignoring case, and only the responses to the configured hosts are cached: the Host and
+     * X-Forwarded-Host headers are sent by the client.
+     *
+     * @param representation include or fields of the response
+     * @return the variant of the response in the RecipeResponseCache, null not to cache it
+     */
+    private String responseVariant(String representation) {
+        UriComponents base = ServletUriComponentsBuilder.fromCurrentContextPath().build();
+        String host = base.getHost() == null ? "" : base.getHost().toLowerCase(Locale.ROOT);
+        if (!cachedHosts.contains(host)) {
+            return null;
+        }
+        String scheme = base.getScheme() == null ? "" : base.getScheme().toLowerCase(Locale.ROOT);
+        return representation + " " + scheme + "://" + host + ":" + base.getPort() + base.getPath();
+    }
 
-        return entityManager.createQuery(query).getResultList();
+    /**
+     * @param acceptEncoding Accept-Encoding header, null when absent
+     * @return true if it lists gzip with a non-zero quality
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
     /**
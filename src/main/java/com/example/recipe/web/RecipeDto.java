@@ -5,8 +5,8 @@ import java.util.List;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
-import com.example.recipe.domain.Ingredient;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import org.springframework.hateoas.ResourceSupport;
@@ -18,6 +18,7 @@ import org.springframework.hateoas.ResourceSupport;
  */
 @Getter
 @Setter
+@NoArgsConstructor
 public class RecipeDto extends ResourceSupport {
 
     @NotNull
@@ -37,7 +38,7 @@ public class RecipeDto extends ResourceSupport {
     @NotNull
     private Integer noOfServings;
 
-    List<Ingredient> ingredients;
+    List<IngredientDto> ingredients;
     /**
      * Constructor to fully initialize the RecipeDto
      *
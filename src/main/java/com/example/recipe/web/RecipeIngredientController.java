@@ -1,6 +1,16 @@
 package com.example.recipe.web;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.servlet.http.HttpServletResponse;
+
 import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.Recipe;
 import com.example.recipe.service.IngredientService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,19 +18,31 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedResources;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * Recipe ingredient Controller
@@ -31,15 +53,18 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping(path = "/recipes/{recipeId}/ingredients")
 public class RecipeIngredientController {
     private static final Logger LOGGER = LoggerFactory.getLogger(RecipeIngredientController.class);
+    private static final int MAX_BATCH_SIZE = 1000;
     private final IngredientService ingredientService;
     private final IngredientAssembler assembler;
+    private final AsyncRequests asyncRequests;
 
 
     @Autowired
     public RecipeIngredientController(IngredientService ingredientService,
-                                      IngredientAssembler assembler) {
+                                      IngredientAssembler assembler, AsyncRequests asyncRequests) {
         this.ingredientService = ingredientService;
         this.assembler = assembler;
+        this.asyncRequests = asyncRequests;
     }
 
     /**
@@ -56,18 +81,76 @@ public class RecipeIngredientController {
         ingredientService.createNew(recipeId, ingredientDto.getName(), ingredientDto.getMeasurement());
     }
 
+    /**
+     * Create several Ingredients of a recipe in one transaction.
+     *
+     * @param recipeId recipeId
+     * @param ingredientBatch up to 1000 ingredients
+     * @return completed once the ingredients are created
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ROLE_CSR')")
+    @ResponseStatus(HttpStatus.CREATED)
+    public DeferredResult<Void> createIngredients(@PathVariable(value = "recipeId") Long recipeId,
+                                                  @RequestBody @Validated IngredientBatch ingredientBatch) {
+        LOGGER.info("POST /recipes/{}/ingredients/batch of {}", recipeId, ingredientBatch.getIngredients().size());
+        return asyncRequests.submit(() -> {
+            ingredientService.createAll(recipeId, ingredientBatch.getIngredients());
+            return null;
+        });
+    }
+
+    /**
+     * Replace the ingredient list of a recipe, writing only the ingredients that changed.
+     *
+     * @param recipeId recipeId
+     * @param ifMatch entity tag of the ingredients the client last read, absent to overwrite any version
+     * @param ingredientBatch the new ingredient list, up to 1000 ingredients
+     * @return no content, with the entity tag of the new ingredient list
+     */
+    @PutMapping
+    @PreAuthorize("hasRole('ROLE_CSR')")
+    public DeferredResult<ResponseEntity<Void>> replaceIngredients(@PathVariable(value = "recipeId") Long recipeId,
+                                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                   @RequestBody @Validated IngredientBatch ingredientBatch) {
+        LOGGER.info("PUT /recipes/{}/ingredients of {}", recipeId, ingredientBatch.getIngredients().size());
+        Long version = EntityTag.version(ifMatch);
+        return asyncRequests.submit(() -> {
+            Recipe recipe = ingredientService.replaceAll(recipeId, ingredientBatch.getIngredients(), version);
+            return ResponseEntity.noContent().eTag(EntityTag.of(recipe.getVersion(), null)).<Void>build();
+        });
+    }
+
     /**
      * Lookup a the ingredients for a recipe.
      *
+     * With after, the ingredients following that ingredient id are returned in id order, without counting
+     * them: the response has no page metadata, and a next link while more ingredients follow.
+     *
      * @param recipeId recipeId
+     * @param after ingredient id to continue after, 0 for the first slice, absent to page by number
      * @param pageable pageable
      * @param pagedAssembler pagedAssembler
+     * @param request request, checked against the version of the ingredients
      * @return HATEOAS enabled page of ingredients.
      */
     @GetMapping
-    public PagedResources<IngredientDto> getAllIngredientsForRecipe(@PathVariable(value = "recipeId") Long recipeId, Pageable pageable,
-                                                                    PagedResourcesAssembler pagedAssembler) {
+    public PagedResources<IngredientDto> getAllIngredientsForRecipe(@PathVariable(value = "recipeId") Long recipeId,
+                                                                    @RequestParam(value = "after", required = false) Long after,
+                                                                    Pageable pageable,
+                                                                    PagedResourcesAssembler pagedAssembler, WebRequest request) {
         LOGGER.info("GET /recipes/{}/ingredients", recipeId);
+        if (after != null && after < 0) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "Invalid after " + after);
+        }
+        long version = ingredientService.lookupIngredientsVersion(recipeId)
+                .orElseThrow(() -> new NoSuchElementException("Recipe does not exist " + recipeId));
+        if (request.checkNotModified(EntityTag.of(version, pageVariant(after, pageable)))) {
+            return null;
+        }
+        if (after != null) {
+            return toResources(ingredientService.lookupIngredients(recipeId, after, pageable.getPageSize()));
+        }
         Page<Ingredient> ingredientsPage = ingredientService.lookupIngredients(recipeId, pageable);
         return pagedAssembler.toResource(ingredientsPage, assembler);
     }
@@ -84,4 +167,66 @@ public class RecipeIngredientController {
         LOGGER.info("DELETE /recipes/{}/ingredients/{}", recipeId, ingredientId);
         ingredientService.delete(recipeId, ingredientId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Delete several ingredients of a recipe, or none if one of them is not found.
+     *
+     * @param recipeId recipeId
+     * @param ids ingredient ids, up to 1000
+     */
+    @DeleteMapping
+    @PreAuthorize("hasRole('ROLE_CSR')")
+    public void deleteIngredients(@PathVariable(value = "recipeId") Long recipeId, @RequestParam("ids") List<Long> ids) {
+        LOGGER.info("DELETE /recipes/{}/ingredients of {}", recipeId, ids.size());
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_SIZE) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "Between 1 and " + MAX_BATCH_SIZE + " ids");
+        }
+        ingredientService.deleteAll(recipeId, ids);
+    }
+
+    /**
+     * Answer for a recipe, or an ingredient of it, that does not exist. Only these endpoints answer 404,
+     * the others still leave NoSuchElementException to ExceptionHandlerController.
+     *
+     * @param ex the missing recipe or ingredient
+     * @param res response
+     * @throws IOException if the error cannot be sent
+     */
+    @ExceptionHandler(NoSuchElementException.class)
+    public void handleNoSuchElementException(NoSuchElementException ex, HttpServletResponse res) throws IOException {
+        res.sendError(HttpStatus.NOT_FOUND.value(), ex.getMessage());
+    }
+
+    /**
+     * Spell out the page of a response in its entity tag, so that two pages never share a tag.
+     *
+     * @param after ingredient id the slice follows, null for a numbered page
+     * @param pageable number, size and sort of the page, only its size for a slice
+     * @return the variant of the entity tag, its sort base64 encoded to keep the tag valid
+     */
+    static String pageVariant(Long after, Pageable pageable) {
+        String variant = (after == null ? "p" + pageable.getPageNumber() : "a" + after) + "s" + pageable.getPageSize();
+        if (after != null || pageable.getSort().isUnsorted()) {
+            return variant;
+        }
+        return variant + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(pageable.getSort().toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Convert a keyset slice of ingredients, linking the slice that follows it.
+     *
+     * @param slice ingredients
+     * @return HATEOAS enabled slice of ingredients, without page metadata
+     */
+    private PagedResources<IngredientDto> toResources(Slice<Ingredient> slice) {
+        List<Link> links = new ArrayList<>();
+        links.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest().toUriString()));
+        if (slice.hasNext()) {
+            Long last = slice.getContent().get(slice.getNumberOfElements() - 1).getIngredientId();
+            links.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", last).toUriString(), Link.REL_NEXT));
+        }
+        return new PagedResources<>(assembler.toResources(slice.getContent()), null, links);
+    }
+}
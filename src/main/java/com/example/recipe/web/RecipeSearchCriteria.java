@@ -1,14 +1,78 @@
 package com.example.recipe.web;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Getter;
 import lombok.Setter;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
 @Getter
 @Setter
 public class RecipeSearchCriteria {
+    /** Each required ingredient is a subquery of its own, so the lists are bounded like the batch endpoints. */
+    static final int MAX_INGREDIENTS = 100;
+
     private boolean vegetarian;
     private Long serves;
-    private String excludeIngredients;
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private List<String> excludeIngredients;
     private String includeInstructions;
     private String ingredientName;
-}
\ No newline at end of file
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private List<String> includeIngredients;
+
+    /**
+     * Check the criteria before they reach the search index or the database.
+     *
+     * @throws HttpServerErrorException 400 if serves is out of the range of the servings, a name is null
+     *         or there are more than {@link #MAX_INGREDIENTS} required or excluded ingredients
+     */
+    public void validate() {
+        if (serves != null && (serves < 0 || serves > Integer.MAX_VALUE)) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "Invalid serves " + serves);
+        }
+        checkNames("includeIngredients", includeIngredients);
+        checkNames("excludeIngredients", excludeIngredients);
+        if (requiredIngredients().size() > MAX_INGREDIENTS || excludedIngredients().size() > MAX_INGREDIENTS) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_INGREDIENTS + " required and " + MAX_INGREDIENTS + " excluded ingredients");
+        }
+    }
+
+    /**
+     * @return the ingredients a recipe must all contain, from ingredientName and includeIngredients
+     */
+    public Set<String> requiredIngredients() {
+        Set<String> names = new LinkedHashSet<>();
+        if (ingredientName != null) {
+            names.add(ingredientName);
+        }
+        if (includeIngredients != null) {
+            names.addAll(includeIngredients);
+        }
+        return names;
+    }
+
+    /**
+     * @return the ingredients a recipe must not contain
+     */
+    public Set<String> excludedIngredients() {
+        Set<String> names = new LinkedHashSet<>();
+        if (excludeIngredients != null) {
+            names.addAll(excludeIngredients);
+        }
+        return names;
+    }
+
+    private static void checkNames(String field, Collection<String> names) {
+        if (names != null && names.contains(null)) {
+            throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "Null name in " + field);
+        }
+    }
+}
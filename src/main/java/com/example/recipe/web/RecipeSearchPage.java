@@ -0,0 +1,32 @@
+package com.example.recipe.web;
+
+import java.util.List;
+
+import lombok.Getter;
+
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * A page of search results and the cursor to fetch the next one.
+ */
+@Getter
+public class RecipeSearchPage {
+
+    private final List<? extends ResourceSupport> content;
+
+    /**
+     * Cursor of the next page, null on the last page.
+     */
+    private final String next;
+
+    /**
+     * Constructor to fully initialize the RecipeSearchPage
+     *
+     * @param content recipes of this page
+     * @param next cursor of the next page
+     */
+    public RecipeSearchPage(List<? extends ResourceSupport> content, String next) {
+        this.content = content;
+        this.next = next;
+    }
+}
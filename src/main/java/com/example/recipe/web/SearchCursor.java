@@ -0,0 +1,54 @@
+package com.example.recipe.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * Opaque continuation token of a keyset paginated search, wrapping the id of the last returned recipe.
+ * The ids are those the search index holds, from 0 to Integer.MAX_VALUE.
+ */
+final class SearchCursor {
+    private static final String PREFIX = "recipe:";
+
+    private SearchCursor() {
+    }
+
+    /**
+     * Encode the token that continues after a recipe.
+     *
+     * @param recipeId id of the last returned recipe
+     * @return the cursor
+     */
+    static String encode(Long recipeId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + recipeId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by encode.
+     *
+     * @param cursor the cursor, may be null
+     * @return the recipe id to continue after, null for the first page
+     * @throws HttpServerErrorException if the cursor is malformed, or its id out of range
+     */
+    static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith(PREFIX)) {
+                long recipeId = Long.parseLong(value.substring(PREFIX.length()));
+                if (recipeId >= 0 && recipeId <= Integer.MAX_VALUE) {
+                    return recipeId;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the bad request below
+        }
+        throw new HttpServerErrorException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
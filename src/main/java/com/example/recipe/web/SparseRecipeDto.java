@@ -0,0 +1,34 @@
+package com.example.recipe.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Data Transfer Object for the fields of a Recipe a client asked for, the others omitted.
+ */
+public class SparseRecipeDto extends ResourceSupport {
+
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+
+    /**
+     * Add a field.
+     *
+     * @param name name of the field in the responses
+     * @param value value
+     */
+    public void put(String name, Object value) {
+        fields.put(name, value);
+    }
+
+    /**
+     * @return the fields, by name
+     */
+    @JsonAnyGetter
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+}
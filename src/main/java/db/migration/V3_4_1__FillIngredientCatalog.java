@@ -0,0 +1,87 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.example.recipe.domain.CatalogIngredient;
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+
+/**
+ * Fill the ingredient catalog created by V3.4 from the names of the stored ingredients.
+ *
+ * The names are normalized by CatalogIngredient.normalize, the method new ingredients go through, so that
+ * the stored and the new names always fold alike; nothing in it depends on the SQL dialect. The ingredients
+ * are read twice, once for the catalog names and once to point them to their entries, and updated by id.
+ */
+public class V3_4_1__FillIngredientCatalog implements JdbcMigration {
+    private static final int FETCH_SIZE = 1000;
+    private static final int BATCH_SIZE = 500;
+    private static final int ID_POOL = 50;
+
+    @Override
+    public void migrate(Connection connection) throws SQLException {
+        // display name of every catalog name: the first of its spellings in name order
+        SortedMap<String, String> names = new TreeMap<>();
+        try (Statement select = connection.createStatement()) {
+            select.setFetchSize(FETCH_SIZE);
+            try (ResultSet rows = select.executeQuery(
+                    "SELECT name FROM ingredient WHERE name IS NOT NULL ORDER BY name")) {
+                while (rows.next()) {
+                    String name = rows.getString(1);
+                    names.putIfAbsent(CatalogIngredient.normalize(name), CatalogIngredient.collapseWhitespace(name));
+                }
+            }
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO catalog_ingredient (catalog_ingredient_id, name, display_name) VALUES (?, ?, ?)")) {
+            for (Map.Entry<String, String> name : names.entrySet()) {
+                int id = ids.size() + 1;
+                ids.put(name.getKey(), id);
+                insert.setInt(1, id);
+                insert.setString(2, name.getKey());
+                insert.setString(3, name.getValue());
+                addBatch(insert, ids.size());
+            }
+            insert.executeBatch();
+        }
+
+        try (Statement select = connection.createStatement();
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE ingredient SET catalog_ingredient_id = ? WHERE ingredient_id = ?")) {
+            select.setFetchSize(FETCH_SIZE);
+            int updates = 0;
+            try (ResultSet rows = select.executeQuery(
+                    "SELECT ingredient_id, name FROM ingredient WHERE name IS NOT NULL")) {
+                while (rows.next()) {
+                    update.setInt(1, ids.get(CatalogIngredient.normalize(rows.getString(2))));
+                    update.setLong(2, rows.getLong(1));
+                    addBatch(update, ++updates);
+                }
+            }
+            update.executeBatch();
+        }
+
+        // Hibernate hands out the ids up to next_val, start one pool past the entries inserted here
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO id_generator (sequence_name, next_val) VALUES ('catalog_ingredient', ?)")) {
+            insert.setLong(1, ids.size() + ID_POOL);
+            insert.executeUpdate();
+        }
+    }
+
+    private static void addBatch(PreparedStatement statement, int count) throws SQLException {
+        statement.addBatch();
+        if (count % BATCH_SIZE == 0) {
+            statement.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+
+CREATE TABLE id_generator (
+  sequence_name VARCHAR(64) NOT NULL PRIMARY KEY,
+  next_val BIGINT NOT NULL
+) ENGINE=INNODB;
+
+-- Hibernate hands out the 50 ids up to next_val, then moves next_val 50 further:
+-- start one pool past the rows inserted with AUTO_INCREMENT
+INSERT INTO id_generator (sequence_name, next_val) SELECT 'recipe', COALESCE(MAX(recipe_id), 0) + 50 FROM recipe;
+INSERT INTO id_generator (sequence_name, next_val) SELECT 'ingredient', COALESCE(MAX(ingredient_id), 0) + 50 FROM ingredient;
+INSERT INTO id_generator (sequence_name, next_val) SELECT 'security_user', COALESCE(MAX(id), 0) + 50 FROM security_user;
@@ -0,0 +1,4 @@
+
+-- optimistic locking and entity tags: a recipe's version also moves when its ingredients change
+ALTER TABLE recipe ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ingredient ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
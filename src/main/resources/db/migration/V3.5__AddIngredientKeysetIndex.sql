@@ -0,0 +1,3 @@
+-- The ingredient pages of a recipe continue after the last ingredient id they returned: index the ids
+-- within the recipe so that a page is a range scan rather than a sort of all the ingredients of the recipe.
+CREATE INDEX ix_ingredient_recipe_id ON ingredient (recipe_id, ingredient_id);
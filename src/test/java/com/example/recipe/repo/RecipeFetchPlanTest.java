@@ -0,0 +1,109 @@
+package com.example.recipe.repo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.Recipe;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Count the statements run by the fetch plans of recipes and ingredients.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+public class RecipeFetchPlanTest {
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Recipe soup;
+
+    @Before
+    public void saveRecipe() {
+        soup = recipeRepository.save(new Recipe("soup", "boil", false, true, 2, null));
+        ingredientRepository.saveAll(Arrays.asList(
+                new Ingredient("carrot", "2", soup),
+                new Ingredient("leek", "1", soup),
+                new Ingredient("potato", "3", soup)));
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void recipeWithIngredientsInOneStatement() {
+        Recipe recipe = recipeRepository.findWithIngredientsById(soup.getRecipeId()).get();
+
+        assertThat(Hibernate.isInitialized(recipe.getIngredients()), is(true));
+        assertThat(recipe.getIngredients().size(), is(3));
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+    }
+
+    @Test
+    public void ingredientPageWithoutRecipe() {
+        Page<Ingredient> page = ingredientRepository.findByRecipeId(soup.getRecipeId(), PageRequest.of(0, 2));
+
+        assertThat(page.getTotalElements(), is(3L));
+        for (Ingredient ingredient : page) {
+            assertThat(Hibernate.isInitialized(ingredient.getRecipe()), is(false));
+            ingredient.toString();
+        }
+        assertThat(statistics.getPrepareStatementCount(), is(2L));
+    }
+
+    @Test
+    public void ingredientNamesWithoutEntities() {
+        Map<Long, Collection<String>> names = new HashMap<>();
+        recipeRepository.scrollIngredientNames(100, (recipe, ingredients) ->
+                names.put(recipe.getRecipeId(), new TreeSet<>(ingredients.values())));
+
+        assertThat(names.get(soup.getRecipeId()), is(new TreeSet<>(Arrays.asList("carrot", "leek", "potato"))));
+        assertThat(statistics.getEntityLoadCount(), is(0L));
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+    }
+
+    @Test
+    public void summariesWithoutEntities() {
+        List<String> names = new ArrayList<>();
+        recipeRepository.scrollSummaries(100, recipe -> names.add(recipe.getName()));
+
+        assertThat(names.contains("soup"), is(true));
+        assertThat(statistics.getEntityLoadCount(), is(0L));
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+    }
+}
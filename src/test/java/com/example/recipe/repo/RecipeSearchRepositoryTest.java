@@ -0,0 +1,192 @@
+package com.example.recipe.repo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.PartialRecipe;
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeField;
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.service.IngredientCatalog;
+import com.example.recipe.web.RecipeSearchCriteria;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class RecipeSearchRepositoryTest {
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private IngredientCatalog ingredientCatalog;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Recipe stirFry;
+
+    private Recipe satay;
+
+    @Before
+    public void saveRecipes() {
+        stirFry = recipeRepository.save(new Recipe("stir fry", "fry", false, true, 2, null));
+        satay = recipeRepository.save(new Recipe("satay", "grill", true, false, 2, null));
+        ingredientRepository.saveAll(Arrays.asList(
+                ingredient("Garlic", "2", stirFry),
+                ingredient("onion", "1", stirFry),
+                ingredient("shrimp", "10", stirFry),
+                ingredient("garlic", "1", satay),
+                ingredient("onions", "1", satay),
+                ingredient("peanut", "100", satay),
+                ingredient("chicken", "300", satay)));
+    }
+
+    @Test
+    public void findByRequiredIngredients() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(Arrays.asList("garlic", "onion"));
+        assertThat(ids(criteria), is(Arrays.asList(stirFry.getRecipeId(), satay.getRecipeId())));
+
+        criteria.setIngredientName("chicken");
+        assertThat(ids(criteria), is(Collections.singletonList(satay.getRecipeId())));
+    }
+
+    @Test
+    public void findByCatalogName() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(Arrays.asList(" GARLIC ", "Onions"));
+        assertThat(ids(criteria), is(Arrays.asList(stirFry.getRecipeId(), satay.getRecipeId())));
+
+        criteria.setIngredientName("saffron");
+        assertThat(ids(criteria), is(Collections.<Long>emptyList()));
+
+        criteria = new RecipeSearchCriteria();
+        criteria.setExcludeIngredients(Arrays.asList("peanuts", "saffron"));
+        assertThat(ids(criteria), is(Collections.singletonList(stirFry.getRecipeId())));
+    }
+
+    @Test
+    public void findWithoutExcludedIngredients() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(Arrays.asList("garlic", "onion"));
+        criteria.setExcludeIngredients(Arrays.asList("peanut", "shellfish"));
+        assertThat(ids(criteria), is(Collections.singletonList(stirFry.getRecipeId())));
+
+        criteria.setExcludeIngredients(Arrays.asList("peanut", "shrimp"));
+        assertThat(ids(criteria), is(Collections.<Long>emptyList()));
+    }
+
+    @Test
+    public void reuseQueryOfSameShape() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setVegetarian(true);
+        criteria.setServes(2L);
+        criteria.setIngredientName("garlic");
+        assertThat(ids(criteria), is(Collections.singletonList(stirFry.getRecipeId())));
+        double hits = plans("hit");
+        double misses = plans("miss");
+
+        criteria.setVegetarian(true);
+        criteria.setServes(4L);
+        criteria.setIngredientName("onion");
+        assertThat(ids(criteria), is(Collections.<Long>emptyList()));
+        assertThat(plans("hit"), is(hits + 1));
+        assertThat(plans("miss"), is(misses));
+    }
+
+    @Test
+    public void reuseQueryOfSameRequiredBucket() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(Arrays.asList("garlic", "onion", "peanut"));
+        assertThat(ids(criteria), is(Collections.singletonList(satay.getRecipeId())));
+        double hits = plans("hit");
+        double misses = plans("miss");
+
+        criteria.setIncludeIngredients(Arrays.asList("garlic", "onion", "peanut", "chicken"));
+        assertThat(ids(criteria), is(Collections.singletonList(satay.getRecipeId())));
+        assertThat(plans("hit"), is(hits + 1));
+        assertThat(plans("miss"), is(misses));
+
+        assertThat(RecipeSearchRepositoryImpl.slots(0), is(0));
+        assertThat(RecipeSearchRepositoryImpl.slots(1), is(1));
+        assertThat(RecipeSearchRepositoryImpl.slots(2), is(2));
+        assertThat(RecipeSearchRepositoryImpl.slots(5), is(8));
+    }
+
+    @Test
+    public void findSummaries() {
+        RecipeSummary summary = recipeRepository.findSummaryById(satay.getRecipeId()).get();
+        assertThat(summary.getName(), is("satay"));
+        assertThat(summary.isContainsMeat(), is(true));
+        assertThat(summary.getNoOfServings(), is(2));
+
+        List<RecipeSummary> summaries = recipeRepository.findSummariesByIdIn(
+                Arrays.asList(satay.getRecipeId(), stirFry.getRecipeId()));
+        assertThat(summaries.stream().map(RecipeSummary::getName).collect(Collectors.toList()),
+                is(Arrays.asList("stir fry", "satay")));
+    }
+
+    @Test
+    public void findFieldsByIdIn() {
+        List<PartialRecipe> recipes = recipeRepository.findFieldsByIdIn(
+                Collections.singletonList(satay.getRecipeId()), EnumSet.of(RecipeField.VEGAN, RecipeField.NAME));
+
+        assertThat(recipes.size(), is(1));
+        assertThat(recipes.get(0).getRecipeId(), is(satay.getRecipeId()));
+        assertThat(recipes.get(0).getValues().keySet(), is(EnumSet.of(RecipeField.NAME, RecipeField.VEGAN)));
+        assertThat(recipes.get(0).getValues().get(RecipeField.NAME), is("satay"));
+        assertThat(recipes.get(0).getValues().get(RecipeField.VEGAN), is(false));
+    }
+
+    @Test
+    public void sliceIngredientsAfter() {
+        Slice<Ingredient> first = ingredientRepository.findByRecipeIdAfter(satay.getRecipeId(), 0L, PageRequest.of(0, 3));
+        assertThat(names(first), is(Arrays.asList("garlic", "onions", "peanut")));
+        assertThat(first.hasNext(), is(true));
+
+        Long last = first.getContent().get(2).getIngredientId();
+        Slice<Ingredient> second = ingredientRepository.findByRecipeIdAfter(satay.getRecipeId(), last, PageRequest.of(0, 3));
+        assertThat(names(second), is(Collections.singletonList("chicken")));
+        assertThat(second.hasNext(), is(false));
+    }
+
+    private static List<String> names(Slice<Ingredient> slice) {
+        return slice.getContent().stream().map(Ingredient::getName).collect(Collectors.toList());
+    }
+
+    private double plans(String result) {
+        return meterRegistry.get("recipe.search.query.plans").tag("result", result).counter().count();
+    }
+
+    private Ingredient ingredient(String name, String measurement, Recipe recipe) {
+        Ingredient ingredient = new Ingredient(name, measurement, recipe);
+        ingredient.setCatalogIngredient(ingredientCatalog.resolve(name));
+        return ingredient;
+    }
+
+    private List<Long> ids(RecipeSearchCriteria criteria) {
+        return recipeRepository.findByCriteria(criteria, stirFry.getRecipeId() - 1, 10).stream()
+                .map(RecipeSummary::getRecipeId)
+                .collect(Collectors.toList());
+    }
+}
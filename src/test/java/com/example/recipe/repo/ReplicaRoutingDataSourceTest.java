@@ -0,0 +1,126 @@
+package com.example.recipe.repo;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Route between two H2 databases, each holding its own name.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private final AtomicReference<Object> client = new AtomicReference<>("alice");
+
+    @Test
+    public void readOnlyTransactionsUseReplica() {
+        DataSource dataSource = routing(1000);
+
+        assertThat(read(dataSource, true), is("replica"));
+        assertThat(read(dataSource, false), is("primary"));
+        assertThat(new JdbcTemplate(dataSource).queryForObject("select name from node", String.class), is("primary"));
+    }
+
+    @Test
+    public void readsStayOnPrimaryAfterWrite() {
+        DataSource dataSource = routing(60000);
+        assertThat(read(dataSource, true), is("replica"));
+
+        read(dataSource, false);
+        assertThat(read(dataSource, true), is("primary"));
+
+        dataSource = routing(0);
+        read(dataSource, false);
+        assertThat(read(dataSource, true), is("replica"));
+    }
+
+    @Test
+    public void windowStartsAtCommit() {
+        DataSource dataSource = routing(500);
+
+        //the write transaction outlasts the window, counted from its first statement it would be over
+        transaction(dataSource, false).execute(status -> {
+            new JdbcTemplate(dataSource).update("update node set name = name");
+            sleep(1000);
+            return null;
+        });
+        assertThat(read(dataSource, true), is("primary"));
+    }
+
+    @Test
+    public void noWindowAfterRollback() {
+        DataSource dataSource = routing(60000);
+
+        transaction(dataSource, false).execute(status -> {
+            new JdbcTemplate(dataSource).update("update node set name = name");
+            status.setRollbackOnly();
+            return null;
+        });
+        assertThat(read(dataSource, true), is("replica"));
+    }
+
+    @Test
+    public void otherClientsReadReplica() {
+        DataSource dataSource = routing(60000);
+        read(dataSource, false);
+
+        client.set("bob");
+        assertThat(read(dataSource, true), is("replica"));
+        client.set(null);
+        assertThat(read(dataSource, true), is("replica"));
+        client.set("alice");
+        assertThat(read(dataSource, true), is("primary"));
+    }
+
+    @Test
+    public void readPrimaryInReadOnlyTransaction() {
+        DataSource dataSource = routing(1000);
+
+        assertThat(ReplicaRoutingDataSource.readPrimary(() -> read(dataSource, true)), is("primary"));
+        assertThat(read(dataSource, true), is("replica"));
+    }
+
+    private DataSource routing(long lagWindowMillis) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(database("primary"), database("replica"),
+                lagWindowMillis, client::get);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private static String read(DataSource dataSource, boolean readOnly) {
+        return transaction(dataSource, readOnly).execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+    }
+
+    private static TransactionTemplate transaction(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists node (name varchar(16))");
+        jdbc.update("delete from node");
+        jdbc.update("insert into node (name) values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.recipe.repo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Latency of the search queries before and after the V3.3 search indexes, on a million ingredients.
+ *
+ * Not part of the test suite; run with mvn test -Dtest=SearchIndexBenchmark, against an in-memory H2
+ * database by default, or against an empty scratch MySQL schema with
+ * -Drecipe.benchmark.url=... -Drecipe.benchmark.username=... -Drecipe.benchmark.password=...
+ */
+public class SearchIndexBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexBenchmark.class);
+    private static final int RECIPES = 100_000;
+    private static final int INGREDIENTS_PER_RECIPE = 10;
+    private static final int NAMES = 5_000;
+    private static final int BATCH = 10_000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+    private static final String SUMMARY = "select r.recipe_id, r.name, r.instructions, r.contains_meat, r.is_vegan,"
+            + " r.no_of_servings from recipe r ";
+    private static final String PAGE = " order by r.recipe_id limit 21";
+
+    @Test
+    public void searchQueries() {
+        DataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("recipe.benchmark.url", "jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1"),
+                System.getProperty("recipe.benchmark.username", "sa"),
+                System.getProperty("recipe.benchmark.password", ""));
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        migrate(dataSource, "V1.1__CreateRecipeSchema.sql", "V1.2__CreateIngredientsSchema.sql");
+        seed(jdbc);
+
+        Map<String, Object[]> queries = new LinkedHashMap<>();
+        queries.put(SUMMARY + "where r.is_vegan = true and r.no_of_servings = ?" + PAGE, new Object[] {4});
+        queries.put(SUMMARY + "where r.no_of_servings = ? and r.recipe_id > ?" + PAGE, new Object[] {7, RECIPES / 2});
+        queries.put(SUMMARY + "where exists (select 1 from ingredient i where i.recipe_id = r.recipe_id and i.name = ?)"
+                + PAGE, new Object[] {name(NAMES - 1)});
+        queries.put(SUMMARY + "where exists (select 1 from ingredient i where i.recipe_id = r.recipe_id and i.name = ?)"
+                + " and not exists (select 1 from ingredient i where i.recipe_id = r.recipe_id and i.name in (?, ?))"
+                + PAGE, new Object[] {name(1), name(0), name(2)});
+        queries.put("select i.ingredient_id, i.name, i.measurement from ingredient i where i.recipe_id = ? limit 20",
+                new Object[] {RECIPES / 3});
+        queries.put("select count(*) from ingredient i where i.recipe_id = ?", new Object[] {RECIPES / 3});
+
+        Map<String, Double> before = time(jdbc, queries);
+        migrate(dataSource, "V3.3__AddSearchIndexes.sql");
+        Map<String, Double> after = time(jdbc, queries);
+
+        LOGGER.info("Median latency of {} runs over {} recipes and {} ingredients, before -> after the indexes",
+                RUNS, RECIPES, RECIPES * INGREDIENTS_PER_RECIPE);
+        for (String query : queries.keySet()) {
+            LOGGER.info(String.format("%10.3f ms -> %8.3f ms  %s", before.get(query), after.get(query), query));
+        }
+        jdbc.execute("drop table ingredient");
+        jdbc.execute("drop table recipe");
+    }
+
+    private static void migrate(DataSource dataSource, String... scripts) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        for (String script : scripts) {
+            populator.addScript(new ClassPathResource("db/migration/" + script));
+        }
+        populator.execute(dataSource);
+    }
+
+    /**
+     * Insert the recipes, and ingredients whose names follow a skewed distribution, as in a real catalog.
+     */
+    private static void seed(JdbcTemplate jdbc) {
+        Random random = new Random(42);
+        List<Object[]> recipes = new ArrayList<>();
+        List<Object[]> ingredients = new ArrayList<>();
+        long ingredientId = 0;
+        for (int recipeId = 1; recipeId <= RECIPES; recipeId++) {
+            recipes.add(new Object[] {recipeId, "recipe " + recipeId, "instructions of recipe " + recipeId,
+                    random.nextInt(3) == 0, random.nextInt(4) == 0, 1 + random.nextInt(8)});
+            for (int i = 0; i < INGREDIENTS_PER_RECIPE; i++) {
+                int name = (int) Math.min(NAMES - 1, Math.floor(Math.pow(random.nextDouble(), 3) * NAMES));
+                ingredients.add(new Object[] {++ingredientId, recipeId, name(name), "1"});
+            }
+            if (ingredients.size() >= BATCH) {
+                insert(jdbc, recipes, ingredients);
+            }
+        }
+        insert(jdbc, recipes, ingredients);
+    }
+
+    private static void insert(JdbcTemplate jdbc, List<Object[]> recipes, List<Object[]> ingredients) {
+        jdbc.batchUpdate("insert into recipe (recipe_id, name, instructions, contains_meat, is_vegan, no_of_servings)"
+                + " values (?, ?, ?, ?, ?, ?)", recipes);
+        jdbc.batchUpdate("insert into ingredient (ingredient_id, recipe_id, name, measurement) values (?, ?, ?, ?)",
+                ingredients);
+        recipes.clear();
+        ingredients.clear();
+    }
+
+    private static Map<String, Double> time(JdbcTemplate jdbc, Map<String, Object[]> queries) {
+        Map<String, Double> medians = new LinkedHashMap<>();
+        queries.forEach((query, arguments) -> {
+            for (int i = 0; i < WARMUP; i++) {
+                jdbc.queryForList(query, arguments);
+            }
+            double[] millis = new double[RUNS];
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                jdbc.queryForList(query, arguments);
+                millis[i] = (System.nanoTime() - start) / 1e6;
+            }
+            Arrays.sort(millis);
+            medians.put(query, millis[RUNS / 2]);
+        });
+        return medians;
+    }
+
+    private static String name(int rank) {
+        return "ingredient " + rank;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.recipe.repo;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.Role;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Read committed entities and queries twice, each time in a new persistence context.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SecondLevelCacheTest {
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    private Recipe soup;
+
+    private Role taster;
+
+    @Before
+    public void saveRecipeAndRole() {
+        soup = recipeRepository.save(new Recipe("soup", "boil", false, true, 2, null));
+        taster = new Role();
+        taster.setRoleName("ROLE_TASTER");
+        taster = roleRepository.save(taster);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @After
+    public void deleteRecipeAndRole() {
+        recipeRepository.deleteById(soup.getRecipeId());
+        roleRepository.deleteById(taster.getId());
+    }
+
+    @Test
+    public void entityReadFromCache() {
+        assertThat(recipeRepository.findById(soup.getRecipeId()).get().getName(), is("soup"));
+        assertThat(recipeRepository.findById(soup.getRecipeId()).get().getName(), is("soup"));
+
+        assertThat(statistics.getSecondLevelCacheHitCount(), is(2L));
+        assertThat(statistics.getPrepareStatementCount(), is(0L));
+    }
+
+    @Test
+    public void lockedEntityReadFromCache() {
+        long version = soup.getVersion();
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            recipeRepository.findForUpdateById(soup.getRecipeId());
+            assertThat(statistics.getPrepareStatementCount(), is(0L));
+            return null;
+        });
+
+        //only the version incremented on commit
+        assertThat(statistics.getSecondLevelCacheHitCount(), is(1L));
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+        assertThat(recipeRepository.findVersionById(soup.getRecipeId()).get(), is(version + 1));
+    }
+
+    @Test
+    public void ingredientsEvictedOnIngredientWrite() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        assertThat(transaction.execute(status ->
+                recipeRepository.findById(soup.getRecipeId()).get().getIngredients().size()), is(0));
+
+        //written through Ingredient.recipe, the owner of the cached collection
+        ingredientRepository.save(new Ingredient("salt", "a pinch", soup));
+
+        assertThat(transaction.execute(status ->
+                recipeRepository.findById(soup.getRecipeId()).get().getIngredients().size()), is(1));
+    }
+
+    @Test
+    public void queryReadFromCache() {
+        assertThat(roleRepository.findByRoleName("ROLE_TASTER").get().getId(), is(taster.getId()));
+        assertThat(roleRepository.findByRoleName("ROLE_TASTER").get().getId(), is(taster.getId()));
+
+        assertThat(statistics.getQueryCacheHitCount(), is(1L));
+        assertThat(statistics.getPrepareStatementCount(), is(1L));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.recipe.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import com.example.recipe.domain.CatalogIngredient;
+import com.example.recipe.repo.CatalogIngredientRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class IngredientCatalogTest {
+
+    @Autowired
+    private IngredientCatalog ingredientCatalog;
+
+    @Autowired
+    private CatalogIngredientRepository catalogIngredientRepository;
+
+    @Test
+    public void normalize() {
+        assertThat(CatalogIngredient.normalize("  Green \t Onions "), is("green onion"));
+        assertThat(CatalogIngredient.normalize("Berries"), is("berry"));
+        assertThat(CatalogIngredient.normalize("tomatoes"), is("tomato"));
+        assertThat(CatalogIngredient.normalize("peaches"), is("peach"));
+        assertThat(CatalogIngredient.normalize("cheeses"), is("cheese"));
+        assertThat(CatalogIngredient.normalize("hummus"), is("hummus"));
+        assertThat(CatalogIngredient.normalize("Swiss"), is("swiss"));
+        assertThat(CatalogIngredient.normalize("peas"), is("pea"));
+        assertThat(CatalogIngredient.normalize("gas"), is("gas"));
+        assertThat(CatalogIngredient.normalize("Cherry Tomatoes"), is("cherry tomato"));
+    }
+
+    @Test
+    public void normalizeExceptions() {
+        assertThat(CatalogIngredient.normalize("molasses"), is("molasses"));
+        assertThat(CatalogIngredient.normalize("Chocolate Cookies"), is("chocolate cookie"));
+        assertThat(CatalogIngredient.normalize("quiches"), is("quiche"));
+        assertThat(CatalogIngredient.normalize("bay leaves"), is("bay leaf"));
+        //no ending removed when fewer than three letters would be left
+        assertThat(CatalogIngredient.normalize("pig toes"), is("pig toe"));
+        assertThat(CatalogIngredient.normalize("pies"), is("pie"));
+    }
+
+    @Test
+    public void resolveOnePerCatalogName() {
+        Map<String, CatalogIngredient> resolved = ingredientCatalog.resolveAll(
+                Arrays.asList("Shallot", "shallots", " SHALLOT", "chive"));
+        assertThat(resolved.size(), is(4));
+        Integer shallot = resolved.get("Shallot").getCatalogIngredientId();
+        assertThat(resolved.get("shallots").getCatalogIngredientId(), is(shallot));
+        assertThat(resolved.get(" SHALLOT").getCatalogIngredientId(), is(shallot));
+        assertThat(catalogIngredientRepository.findById(shallot).get().getDisplayName(), is("Shallot"));
+
+        CatalogIngredient again = ingredientCatalog.resolve("Shallots");
+        assertThat(again.getCatalogIngredientId(), is(shallot));
+        assertThat(catalogIngredientRepository.findByName("shallot").get().getCatalogIngredientId(), is(shallot));
+        assertThat(catalogIngredientRepository.findByName("chive").isPresent(), is(true));
+        assertThat(ingredientCatalog.resolve(null), is(nullValue()));
+    }
+
+    @Test(expected = DataIntegrityViolationException.class)
+    public void rethrowViolationOfAnotherName() {
+        //a unique key ignoring accents rejects jalapeño for jalapeno, and reads back jalapeno only
+        CatalogIngredientRepository repository = mock(CatalogIngredientRepository.class);
+        when(repository.findByNameIn(any())).thenReturn(Collections.emptyList(),
+                Collections.singletonList(new CatalogIngredient("jalapeno", "Jalapeno")));
+        when(repository.saveAll(any())).thenThrow(new DataIntegrityViolationException("uk_catalog_ingredient_name"));
+        IngredientCatalog catalog = new IngredientCatalog(repository, mock(PlatformTransactionManager.class));
+
+        catalog.resolve("Jalapeño");
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.recipe.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IngredientNameIndexTest {
+
+    @Mock
+    private RecipeSearchIndex recipeSearchIndexMock;
+
+    private IngredientNameIndex index;
+
+    @Before
+    public void buildIndex() {
+        when(recipeSearchIndexMock.documents()).thenReturn(Arrays.asList(
+                document(1L, "olive oil", "onion", "oregano"),
+                document(2L, "onion", "orange"),
+                document(3L, "onion", "olive oil", "garlic")));
+        index = new IngredientNameIndex(recipeSearchIndexMock);
+        index.onIndexChange(new RecipeIndexEvent(null, null));
+    }
+
+    @Test
+    public void completeByRecipeCount() {
+        assertThat(names(index.complete("O", 10)), is(Arrays.asList("onion", "olive oil", "orange", "oregano")));
+        assertThat(names(index.complete("or", 1)), is(Collections.singletonList("orange")));
+        assertThat(index.complete("on", 10).get(0).getRecipes(), is(3));
+        assertThat(names(index.complete("onions", 10)), is(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void followIngredientChanges() {
+        index.onIndexChange(new RecipeIndexEvent(document(2L, "onion", "orange"),
+                document(2L, "onion", "oregano", "olive oil")));
+        assertThat(names(index.complete("o", 10)), is(Arrays.asList("olive oil", "onion", "oregano")));
+        assertThat(index.complete("ore", 10).get(0).getRecipes(), is(2));
+
+        index.onIndexChange(new RecipeIndexEvent(document(3L, "onion", "olive oil", "garlic"), null));
+        assertThat(names(index.complete("", 10)), is(Arrays.asList("olive oil", "onion", "oregano")));
+        assertThat(names(index.complete("g", 10)), is(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void completeWithMostUsedSpelling() {
+        index.onIndexChange(new RecipeIndexEvent(null, document(4L, "Chocolate Cookies")));
+        index.onIndexChange(new RecipeIndexEvent(null, document(5L, "chocolate cookie")));
+        index.onIndexChange(new RecipeIndexEvent(null, document(6L, "Chocolate Cookies")));
+        assertThat(names(index.complete("CHOC", 10)), is(Collections.singletonList("Chocolate Cookies")));
+        assertThat(index.complete("choc", 10).get(0).getRecipes(), is(3));
+
+        //the spelling follows the recipes, the name stays complete while one of them uses it
+        index.onIndexChange(new RecipeIndexEvent(document(4L, "Chocolate Cookies"), document(4L, "chocolate cookie")));
+        assertThat(names(index.complete("choc", 10)), is(Collections.singletonList("chocolate cookie")));
+        assertThat(index.complete("choc", 10).get(0).getRecipes(), is(3));
+        index.onIndexChange(new RecipeIndexEvent(document(5L, "chocolate cookie"), null));
+        index.onIndexChange(new RecipeIndexEvent(document(4L, "chocolate cookie"), null));
+        assertThat(names(index.complete("choc", 10)), is(Collections.singletonList("Chocolate Cookies")));
+        assertThat(index.complete("choc", 10).get(0).getRecipes(), is(1));
+    }
+
+    private static List<String> names(List<IngredientCompletion> completions) {
+        List<String> names = new ArrayList<>();
+        completions.forEach(completion -> names.add(completion.getName()));
+        return names;
+    }
+
+    private static RecipeDocument document(long recipeId, String... names) {
+        Map<Long, String> ingredients = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            ingredients.put(recipeId * 10 + i, names[i]);
+        }
+        return new RecipeDocument(recipeId, true, false, 2, ingredients);
+    }
+}
@@ -1,8 +1,13 @@
 package com.example.recipe.service;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
+import com.example.recipe.domain.CatalogIngredient;
 import com.example.recipe.domain.Ingredient;
 import com.example.recipe.domain.Recipe;
 import com.example.recipe.repo.IngredientRepository;
@@ -12,14 +17,22 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -38,6 +51,21 @@ public class IngredientServiceTest {
     @Mock
     private RecipeRepository recipeRepositoryMock;
 
+    @Mock
+    private RecipeSearchIndex recipeSearchIndexMock;
+
+    @Mock
+    private IngredientNameIndex ingredientNameIndexMock;
+
+    @Mock
+    private IngredientCatalog ingredientCatalogMock;
+
+    @Mock
+    private RecipeResponseCache recipeResponseCacheMock;
+
+    @Mock
+    private PlatformTransactionManager transactionManagerMock;
+
     @InjectMocks
     private IngredientService ingredientServiceMock;
 
@@ -54,7 +82,6 @@ public class IngredientServiceTest {
     @Before
     public void setupReturnValuesOfMockMethods() {
         when(ingredientRepositoryMock.findById(INGREDIENT_ID)).thenReturn(Optional.of(ingredientMock));
-        when(recipeRepositoryMock.findById(RECIPE_ID)).thenReturn(Optional.of(recipeMock));
     }
 
     /******************************
@@ -86,6 +113,9 @@ public class IngredientServiceTest {
 
     @Test
     public void delete() {
+        when(ingredientMock.getRecipe()).thenReturn(recipeMock);
+        when(recipeMock.getRecipeId()).thenReturn(RECIPE_ID);
+        when(recipeRepositoryMock.findForUpdateById(RECIPE_ID)).thenReturn(Optional.of(recipeMock));
         //invoke delete
         ingredientServiceMock.deleteById(1L);
 
@@ -96,14 +126,96 @@ public class IngredientServiceTest {
     @Test
     public void update() {
         //invoke update
-        ingredientServiceMock.update(INGREDIENT_ID,new IngredientDto("test", "test"));
+        when(ingredientMock.getRecipe()).thenReturn(recipeMock);
+        when(recipeMock.getRecipeId()).thenReturn(RECIPE_ID);
+        when(recipeRepositoryMock.findForUpdateById(RECIPE_ID)).thenReturn(Optional.of(recipeMock));
+        ingredientServiceMock.update(INGREDIENT_ID,new IngredientDto("test", "test"), null);
 
-        //verify ingredientRepository.save invoked once
+        //verify ingredientRepository.save invoked once, and the version of the recipe incremented
         verify(ingredientRepositoryMock).save(any(Ingredient.class));
+        verify(recipeRepositoryMock).findForUpdateById(RECIPE_ID);
 
         //verify and ingredientMock setter methods invoked
         verify(ingredientMock).setName("test");
         verify(ingredientMock).setMeasurement("test");
+        verify(ingredientCatalogMock).resolve("test");
+    }
+
+    @Test
+    public void replaceAllWritesDifference() {
+        Recipe soup = new Recipe("soup", "boil", false, true, 2, null);
+        soup.setVersion(3L);
+        Ingredient onion = new Ingredient("onion", "1", soup);
+        Ingredient garlic = new Ingredient("garlic", "2", soup);
+        Ingredient salt = new Ingredient("salt", "a pinch", soup);
+        when(recipeRepositoryMock.findForUpdateById(RECIPE_ID)).thenReturn(Optional.of(soup));
+        when(ingredientRepositoryMock.findByRecipe(soup)).thenReturn(Arrays.asList(onion, garlic, salt));
+
+        //invoke replaceAll: onion renamed and measured again, salt unchanged, basil added, garlic removed
+        Recipe replaced = ingredientServiceMock.replaceAll(RECIPE_ID, Arrays.asList(
+                new IngredientDto("Onions", "2"), new IngredientDto("salt", "a pinch"), new IngredientDto("basil", "5")), 3L);
+
+        //verify only the changed and new ingredients are saved, and the left over deleted
+        ArgumentCaptor<List<Ingredient>> saved = ArgumentCaptor.forClass(List.class);
+        verify(ingredientRepositoryMock).saveAll(saved.capture());
+        assertThat(saved.getValue().size(), is(2));
+        assertThat(saved.getValue().get(0), is(onion));
+        assertThat(onion.getName(), is("Onions"));
+        assertThat(onion.getMeasurement(), is("2"));
+        assertThat(saved.getValue().get(1).getName(), is("basil"));
+        assertThat(saved.getValue().get(1).getRecipe(), is(soup));
+        verify(ingredientRepositoryMock).deleteAll(Collections.singletonList(garlic));
+        assertThat(replaced, is(soup));
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void replaceAllStaleVersion() {
+        Recipe soup = new Recipe("soup", "boil", false, true, 2, null);
+        soup.setVersion(4L);
+        when(recipeRepositoryMock.findForUpdateById(RECIPE_ID)).thenReturn(Optional.of(soup));
+
+        ingredientServiceMock.replaceAll(RECIPE_ID, Collections.singletonList(new IngredientDto("salt", "1")), 3L);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void createNewForMissingRecipe() {
+        when(recipeSearchIndexMock.isMissing(RECIPE_ID)).thenReturn(true);
+        try {
+            ingredientServiceMock.createNew(RECIPE_ID, "test", "test");
+        } finally {
+            //verify the recipe is not loaded, nor a transaction started
+            verify(recipeRepositoryMock).existsById(RECIPE_ID);
+            verifyNoMoreInteractions(recipeRepositoryMock, transactionManagerMock);
+        }
+    }
+
+    @Test
+    public void createNewForRecipeNotIndexed() {
+        when(recipeSearchIndexMock.isMissing(RECIPE_ID)).thenReturn(true);
+        when(recipeRepositoryMock.existsById(RECIPE_ID)).thenReturn(true);
+        when(recipeRepositoryMock.findForUpdateById(RECIPE_ID)).thenReturn(Optional.of(recipeMock));
+
+        //invoke createNew for a recipe written by another instance
+        ingredientServiceMock.createNew(RECIPE_ID, "test", "test");
+
+        verify(ingredientRepositoryMock).save(any(Ingredient.class));
+    }
+
+    @Test
+    public void deleteAllOrNone() {
+        when(recipeRepositoryMock.findForUpdateById(RECIPE_ID)).thenReturn(Optional.of(recipeMock));
+        when(ingredientMock.getIngredientId()).thenReturn(INGREDIENT_ID);
+        when(ingredientRepositoryMock.findByRecipeAndIngredientIdIn(recipeMock, new HashSet<>(Arrays.asList(INGREDIENT_ID, 2L))))
+                .thenReturn(Collections.singletonList(ingredientMock));
+
+        //invoke deleteAll with an id of another recipe: nothing deleted
+        try {
+            ingredientServiceMock.deleteAll(RECIPE_ID, Arrays.asList(INGREDIENT_ID, 2L));
+            fail("Ingredient 2 is not an ingredient of the recipe");
+        } catch (NoSuchElementException e) {
+            assertThat(e.getMessage(), is("Recipe " + RECIPE_ID + " has no ingredients [2]"));
+        }
+        verify(ingredientRepositoryMock, never()).deleteAll(any());
     }
 
     /******************************
@@ -119,14 +231,26 @@ public class IngredientServiceTest {
         //prepare to capture a Ingredient Object
         ArgumentCaptor<Ingredient> ingredientArgumentCaptor = ArgumentCaptor.forClass(Ingredient.class);
         when(ingredientServiceMock.lookupIngredientById(INGREDIENT_ID)).thenReturn(Optional.of(ingredientMock));
+        when(recipeRepositoryMock.findForUpdateById(RECIPE_ID)).thenReturn(Optional.of(recipeMock));
+        CatalogIngredient catalogIngredient = new CatalogIngredient("test", "Test");
+        when(ingredientCatalogMock.resolve("test")).thenReturn(catalogIngredient);
         //invoke createNew
         ingredientServiceMock.createNew(RECIPE_ID, "test", "test");
 
         //verify ingredientRepository.save invoked once and capture the Ingredient Object
         verify(ingredientRepositoryMock).save(ingredientArgumentCaptor.capture());
 
+        //verify the catalog is resolved before the transaction locking the recipe starts
+        InOrder inOrder = inOrder(ingredientCatalogMock, transactionManagerMock, recipeRepositoryMock);
+        inOrder.verify(ingredientCatalogMock).resolve("test");
+        inOrder.verify(transactionManagerMock).getTransaction(any());
+        inOrder.verify(recipeRepositoryMock).findForUpdateById(RECIPE_ID);
+        inOrder.verify(transactionManagerMock).commit(any());
+
         //verify the attributes of the Ingredient Object
         assertThat(ingredientArgumentCaptor.getValue().getName(), is("test"));
         assertThat(ingredientArgumentCaptor.getValue().getMeasurement(), is("test"));
+        assertThat(ingredientArgumentCaptor.getValue().getRecipe(), is(recipeMock));
+        assertThat(ingredientArgumentCaptor.getValue().getCatalogIngredient(), is(catalogIngredient));
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.example.recipe.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.repo.RecipeRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class RecipeExportServiceTest {
+    @Autowired
+    private RecipeExportService recipeExportService;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void exportOneRecipePerLine() throws IOException {
+        Recipe soup = new Recipe("soup", "boil", false, true, 2, new ArrayList<>());
+        soup.getIngredients().add(new Ingredient("carrot", "2", soup));
+        soup.getIngredients().add(new Ingredient("leek", "1", soup));
+        Recipe toast = new Recipe("toast", "toast", false, true, 1, new ArrayList<>());
+        recipeRepository.saveAll(Arrays.asList(soup, toast));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recipeExportService.export(out);
+
+        List<JsonNode> recipes = new ArrayList<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            JsonNode recipe = objectMapper.readTree(line);
+            long id = recipe.get("recipeId").asLong();
+            if (id == soup.getRecipeId() || id == toast.getRecipeId()) {
+                recipes.add(recipe);
+            }
+        }
+        assertThat(recipes.size(), is(2));
+        assertThat(recipes.get(0).get("name").asText(), is("soup"));
+        assertThat(recipes.get(0).get("ingredients").size(), is(2));
+        assertThat(recipes.get(0).get("ingredients").get(1).get("name").asText(), is("leek"));
+        assertThat(recipes.get(1).get("ingredients").size(), is(0));
+    }
+}
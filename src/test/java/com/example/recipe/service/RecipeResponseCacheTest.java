@@ -0,0 +1,103 @@
+package com.example.recipe.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import com.example.recipe.service.RecipeResponseCache.SerializedResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RecipeResponseCacheTest {
+
+    private static final String BODY = "{\n  \"name\" : \"Tomato soup\",\n  \"instructions\" : \"Simmer the tomatoes,"
+            + " then simmer the tomatoes again\"\n}";
+
+    private RecipeResponseCache cache;
+
+    private AtomicInteger serialized;
+
+    @Before
+    public void createCache() {
+        cache = new RecipeResponseCache(new SimpleMeterRegistry(), 1 << 20, true);
+        serialized = new AtomicInteger();
+    }
+
+    @Test
+    public void cacheByVersion() throws IOException {
+        SerializedResponse response = cache.get(1L, 3L, "", serializer());
+        assertThat(new String(response.getBody(), StandardCharsets.UTF_8), is(BODY));
+        assertThat(gunzip(response.getGzipped()), is(BODY));
+
+        assertThat(cache.get(1L, 3L, "", serializer()), is(response));
+        assertThat(serialized.get(), is(1));
+
+        cache.get(1L, 4L, "", serializer());
+        cache.get(1L, 4L, "ingredients", serializer());
+        assertThat(serialized.get(), is(3));
+    }
+
+    @Test
+    public void invalidateRecipe() {
+        SerializedResponse response = cache.get(1L, 3L, "", serializer());
+        cache.get(2L, 3L, "", serializer());
+
+        cache.invalidate(1L);
+        assertThat(cache.get(1L, 3L, "", serializer()) == response, is(false));
+        cache.get(2L, 3L, "", serializer());
+        assertThat(serialized.get(), is(3));
+    }
+
+    @Test
+    public void boundVariants() {
+        for (int variant = 0; variant < RecipeResponseCache.MAX_VARIANTS + 2; variant++) {
+            cache.get(1L, 3L, "host" + variant, serializer());
+        }
+        //the variants past the bound are not cached
+        cache.get(1L, 3L, "host0", serializer());
+        SerializedResponse response = cache.get(1L, 3L, "host" + RecipeResponseCache.MAX_VARIANTS, serializer());
+        assertThat(response.getGzipped(), is(nullValue()));
+        assertThat(serialized.get(), is(RecipeResponseCache.MAX_VARIANTS + 3));
+
+        //nor a response without variant
+        cache.get(2L, 3L, null, serializer());
+        cache.get(2L, 3L, null, serializer());
+        assertThat(serialized.get(), is(RecipeResponseCache.MAX_VARIANTS + 5));
+    }
+
+    @Test
+    public void disabled() {
+        cache = new RecipeResponseCache(new SimpleMeterRegistry(), 1 << 20, false);
+        cache.get(1L, 3L, "", serializer());
+        SerializedResponse response = cache.get(1L, 3L, "", serializer());
+        assertThat(serialized.get(), is(2));
+        assertThat(response.getGzipped(), is(nullValue()));
+    }
+
+    private Supplier<byte[]> serializer() {
+        return () -> {
+            serialized.incrementAndGet();
+            return BODY.getBytes(StandardCharsets.UTF_8);
+        };
+    }
+
+    private static String gunzip(byte[] gzipped) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            byte[] buffer = new byte[256];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.recipe.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.web.RecipeSearchCriteria;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RecipeSearchCacheTest {
+
+    private MeterRegistry meterRegistry;
+
+    private RecipeSearchCache cache;
+
+    private AtomicInteger searches;
+
+    @Before
+    public void createCache() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new RecipeSearchCache(meterRegistry, 100, 60, true);
+        searches = new AtomicInteger();
+    }
+
+    @Test
+    public void cacheByNormalizedCriteria() {
+        search(criteria(Arrays.asList("Garlic", "onion"), null), null);
+        search(criteria(Arrays.asList(" onion", "garlic"), null), null);
+        assertThat(searches.get(), is(1));
+
+        search(criteria(Arrays.asList("garlic", "onion"), null), 7L);
+        assertThat(searches.get(), is(2));
+        assertThat(meterRegistry.get("cache.gets").tag("cache", RecipeSearchCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    public void invalidateMatchingResults() {
+        RecipeSearchCriteria garlic = criteria(Collections.singletonList("garlic"), null);
+        RecipeSearchCriteria noGarlic = criteria(null, Collections.singletonList("garlic"));
+        search(garlic, null);
+        search(garlic, 10L);
+        search(noGarlic, null);
+
+        //adding garlic to recipe 5 alters the garlic results from the start and those without garlic
+        cache.onIndexChange(new RecipeIndexEvent(document(5L, "onion"), document(5L, "onion", "garlic")));
+        searches.set(0);
+        search(garlic, 10L);
+        assertThat(searches.get(), is(0));
+        search(garlic, null);
+        search(noGarlic, null);
+        assertThat(searches.get(), is(2));
+
+        //an unrelated recipe leaves the garlic results alone
+        cache.onIndexChange(new RecipeIndexEvent(null, document(6L, "basil")));
+        searches.set(0);
+        search(garlic, null);
+        assertThat(searches.get(), is(0));
+
+        cache.onIndexChange(new RecipeIndexEvent(null, null));
+        search(garlic, null);
+        assertThat(searches.get(), is(1));
+    }
+
+    @Test
+    public void invalidateResultsWithoutRequiredNames() {
+        RecipeSearchCriteria servesTwo = criteria(null, null);
+        servesTwo.setServes(2L);
+        RecipeSearchCriteria servesFour = criteria(null, null);
+        servesFour.setServes(4L);
+        RecipeSearchCriteria vegetarian = criteria(null, null);
+        vegetarian.setVegetarian(true);
+        search(servesTwo, null);
+        search(servesFour, null);
+        search(vegetarian, null);
+
+        cache.onIndexChange(new RecipeIndexEvent(null, document(5L, "basil")));
+        searches.set(0);
+        search(servesFour, null);
+        assertThat(searches.get(), is(0));
+        search(servesTwo, null);
+        search(vegetarian, null);
+        assertThat(searches.get(), is(2));
+    }
+
+    private void search(RecipeSearchCriteria criteria, Long after) {
+        cache.get(criteria, after, 20, () -> {
+            searches.incrementAndGet();
+            return emptySlice();
+        });
+    }
+
+    private static Slice<RecipeSummary> emptySlice() {
+        return new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 20), false);
+    }
+
+    private static RecipeSearchCriteria criteria(List<String> include, List<String> exclude) {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(include);
+        criteria.setExcludeIngredients(exclude);
+        return criteria;
+    }
+
+    private static RecipeDocument document(long recipeId, String... names) {
+        Map<Long, String> ingredients = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            ingredients.put(recipeId * 10 + i, names[i]);
+        }
+        return new RecipeDocument(recipeId, true, false, 2, ingredients);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.recipe.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.repo.RecipeRepository;
+import com.example.recipe.web.RecipeSearchCriteria;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.rest.core.event.AfterCreateEvent;
+import org.springframework.data.rest.core.event.AfterDeleteEvent;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RecipeSearchIndexTest {
+
+    @Mock
+    private RecipeRepository recipeRepositoryMock;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisherMock;
+
+    private RecipeSearchIndex index;
+
+    private Recipe soup;
+
+    private Recipe curry;
+
+    /**
+     * Index a vegan soup and a chicken curry.
+     */
+    @Before
+    public void buildIndex() {
+        soup = recipe(1L, true, 2);
+        curry = recipe(2L, false, 4);
+        catalog(Arrays.asList(soup, curry), Arrays.asList(
+                ingredient(10L, "Onion", soup),
+                ingredient(11L, "garlic", soup),
+                ingredient(20L, "onion", curry),
+                ingredient(21L, "Chicken", curry)));
+
+        index = new RecipeSearchIndex(recipeRepositoryMock, eventPublisherMock, true);
+        index.rebuild();
+    }
+
+    @Test
+    public void searchByAttributes() {
+        assertThat(index.isReady(), is(true));
+        assertThat(ids(index.search(new RecipeSearchCriteria())), is(Arrays.asList(1L, 2L)));
+
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setVegetarian(true);
+        assertThat(ids(index.search(criteria)), is(Collections.singletonList(1L)));
+
+        criteria = new RecipeSearchCriteria();
+        criteria.setServes(4L);
+        assertThat(ids(index.search(criteria)), is(Collections.singletonList(2L)));
+    }
+
+    @Test
+    public void searchByIngredients() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIngredientName(" ONION ");
+        assertThat(ids(index.search(criteria)), is(Arrays.asList(1L, 2L)));
+
+        criteria.setIngredientName("Onions");
+        assertThat(ids(index.search(criteria)), is(Arrays.asList(1L, 2L)));
+
+        criteria.setExcludeIngredients(Collections.singletonList("chicken"));
+        assertThat(ids(index.search(criteria)), is(Collections.singletonList(1L)));
+    }
+
+    @Test
+    public void searchByIngredientSets() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(Arrays.asList("onion", "garlic"));
+        assertThat(ids(index.search(criteria)), is(Collections.singletonList(1L)));
+
+        criteria.setIncludeIngredients(Arrays.asList("onion", "saffron"));
+        assertThat(ids(index.search(criteria)), is(Collections.<Long>emptyList()));
+
+        criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(Collections.singletonList("onion"));
+        criteria.setExcludeIngredients(Arrays.asList("garlic", "peanut"));
+        assertThat(ids(index.search(criteria)), is(Collections.singletonList(2L)));
+
+        criteria.setExcludeIngredients(Arrays.asList("garlic", "chicken"));
+        assertThat(ids(index.search(criteria)), is(Collections.<Long>emptyList()));
+    }
+
+    @Test
+    public void keptCurrentOnWrites() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIngredientName("garlic");
+
+        Ingredient garlic = ingredient(22L, "garlic", curry);
+        index.putIngredient(garlic);
+        assertThat(ids(index.search(criteria)), is(Arrays.asList(1L, 2L)));
+
+        index.removeIngredient(garlic);
+        assertThat(ids(index.search(criteria)), is(Collections.singletonList(1L)));
+
+        curry.setVegan(true);
+        index.updateRecipe(curry);
+        criteria = new RecipeSearchCriteria();
+        criteria.setVegetarian(true);
+        criteria.setIngredientName("onion");
+        assertThat(ids(index.search(criteria)), is(Arrays.asList(1L, 2L)));
+
+        index.removeRecipe(1L);
+        assertThat(ids(index.search(criteria)), is(Collections.singletonList(2L)));
+    }
+
+    @Test
+    public void knowMissingRecipes() {
+        assertThat(index.isMissing(1L), is(false));
+        assertThat(index.isMissing(3L), is(true));
+
+        index.removeRecipe(1L);
+        assertThat(index.isMissing(1L), is(true));
+
+        //recipes written through Spring Data REST
+        Recipe salad = recipe(3L, true, 1);
+        index.onRepositoryEvent(new AfterCreateEvent(salad));
+        assertThat(index.isMissing(3L), is(false));
+        index.onRepositoryEvent(new AfterDeleteEvent(salad));
+        assertThat(index.isMissing(3L), is(true));
+
+        RecipeSearchIndex disabled = new RecipeSearchIndex(recipeRepositoryMock, eventPublisherMock, false);
+        disabled.rebuild();
+        assertThat(disabled.isMissing(3L), is(false));
+    }
+
+    @Test
+    public void publishChanges() {
+        ArgumentCaptor<RecipeIndexEvent> event = ArgumentCaptor.forClass(RecipeIndexEvent.class);
+        verify(eventPublisherMock).publishEvent(event.capture());
+        assertThat(event.getValue().isRebuild(), is(true));
+
+        index.putIngredient(ingredient(12L, "Basil", soup));
+        verify(eventPublisherMock, times(2)).publishEvent(event.capture());
+        assertThat(event.getValue().getPrevious().names(), is(new HashSet<>(Arrays.asList("onion", "garlic"))));
+        assertThat(event.getValue().getCurrent().names(), is(new HashSet<>(Arrays.asList("onion", "garlic", "basil"))));
+
+        index.removeRecipe(2L);
+        verify(eventPublisherMock, times(3)).publishEvent(event.capture());
+        assertThat(event.getValue().getPrevious().getRecipeId(), is(2L));
+        assertThat(event.getValue().getCurrent(), is(nullValue()));
+    }
+
+    @Test
+    public void addRecipeWithIngredients() {
+        Recipe salad = recipe(3L, true, 1);
+        salad.setIngredients(Collections.singletonList(ingredient(30L, "Lettuce", salad)));
+        index.addRecipe(salad);
+
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIngredientName("lettuce");
+        List<Long> ids = ids(index.search(criteria));
+        assertThat(ids, is(Collections.singletonList(3L)));
+    }
+
+    @Test
+    public void countFacets() {
+        RecipeFacets facets = index.facets(index.search(new RecipeSearchCriteria()), 2);
+        assertThat(facets.getTotal(), is(2));
+        assertThat(facets.getVegetarian().get(true), is(1));
+        assertThat(facets.getContainsMeat().get(false), is(1));
+        assertThat(facets.getServes().get(4), is(1));
+        assertThat(new ArrayList<>(facets.getIngredients().keySet()), is(Arrays.asList("onion", "chicken")));
+        assertThat(facets.getIngredients().get("onion"), is(2));
+
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setExcludeIngredients(Collections.singletonList("chicken"));
+        facets = index.facets(index.search(criteria), 10);
+        assertThat(facets.getTotal(), is(1));
+        assertThat(facets.getVegetarian().get(false), is(0));
+        assertThat(facets.getServes(), is(Collections.singletonMap(2, 1)));
+        assertThat(facets.getIngredients().keySet(), is(new HashSet<>(Arrays.asList("onion", "garlic"))));
+    }
+
+    @Test
+    public void droppedForIdsOutOfRange() {
+        index.addRecipe(recipe((long) Integer.MAX_VALUE + 1, true, 2));
+        assertThat(index.isReady(), is(false));
+        assertThat(index.isMissing(3L), is(false));
+        verify(eventPublisherMock, times(2)).publishEvent(any(RecipeIndexEvent.class));
+
+        catalog(Arrays.asList(soup, recipe(Long.MAX_VALUE, false, 4)), Collections.emptyList());
+        index.rebuild();
+        assertThat(index.isReady(), is(false));
+    }
+
+    private static List<Long> ids(BitSet matches) {
+        List<Long> ids = new ArrayList<>();
+        matches.stream().forEach(id -> ids.add((long) id));
+        return ids;
+    }
+
+    private void catalog(List<Recipe> recipes, List<Ingredient> ingredients) {
+        doAnswer(invocation -> {
+            BiConsumer<RecipeSummary, Map<Long, String>> consumer = invocation.getArgument(1);
+            for (Recipe recipe : recipes) {
+                Map<Long, String> names = new HashMap<>();
+                for (Ingredient ingredient : ingredients) {
+                    if (ingredient.getRecipe() == recipe) {
+                        names.put(ingredient.getIngredientId(), ingredient.getName());
+                    }
+                }
+                consumer.accept(new RecipeSummary(recipe.getRecipeId(), null, null, recipe.isContainsMeat(),
+                        recipe.isVegan(), recipe.getNoOfServings()), names);
+            }
+            return null;
+        }).when(recipeRepositoryMock).scrollIngredientNames(anyInt(), any());
+    }
+
+    private static Recipe recipe(Long id, boolean vegan, int servings) {
+        Recipe recipe = new Recipe("recipe " + id, "instructions", !vegan, vegan, servings, null);
+        recipe.setRecipeId(id);
+        return recipe;
+    }
+
+    private static Ingredient ingredient(Long id, String name, Recipe recipe) {
+        Ingredient ingredient = new Ingredient(name, "1", recipe);
+        ingredient.setIngredientId(id);
+        return ingredient;
+    }
+}
@@ -1,11 +1,23 @@
 package com.example.recipe.service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import com.example.recipe.domain.Ingredient;
 import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeSummary;
 import com.example.recipe.repo.RecipeRepository;
+import com.example.recipe.web.IngredientDto;
 import com.example.recipe.web.RecipeDto;
+import com.example.recipe.web.RecipeSearchCriteria;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -14,13 +26,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,6 +52,24 @@ public class RecipeServiceTest {
     @Mock
     private RecipeRepository recipeRepositoryMock;
 
+    @Mock
+    private RecipeSearchIndex recipeSearchIndexMock;
+
+    @Mock
+    private RecipeTextIndex recipeTextIndexMock;
+
+    @Mock
+    private RecipeSearchCache recipeSearchCacheMock;
+
+    @Mock
+    private RecipeSimilarityIndex recipeSimilarityIndexMock;
+
+    @Mock
+    private IngredientCatalog ingredientCatalogMock;
+
+    @Mock
+    private RecipeResponseCache recipeResponseCacheMock;
+
     @InjectMocks
     private RecipeService recipeService;
 
@@ -83,6 +118,49 @@ public class RecipeServiceTest {
         assertThat(recipeService.lookupRecipe(RECIPE_ID, pageable), is(page));
     }
 
+    @Test
+    public void search() {
+        BitSet matches = new BitSet();
+        matches.set(1, 4);
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        when(recipeSearchIndexMock.isReady()).thenReturn(true);
+        when(recipeTextIndexMock.isReady()).thenReturn(true);
+        when(recipeSearchIndexMock.search(criteria)).thenReturn(matches);
+        when(recipeSearchCacheMock.get(eq(criteria), eq(RECIPE_ID), eq(1), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Slice<RecipeSummary>>>getArgument(3).get());
+        RecipeSummary summary = new RecipeSummary(2L, "Tomato soup", "Simmer the tomatoes", false, true, 2);
+        when(recipeRepositoryMock.findSummariesByIdIn(Collections.singletonList(2L))).thenReturn(Collections.singletonList(summary));
+
+        //invoke and verify a slice of one recipe after recipe 1, with more to come
+        Slice<RecipeSummary> slice = recipeService.search(criteria, RECIPE_ID, 1);
+        assertThat(slice.getContent(), is(Collections.singletonList(summary)));
+        assertThat(slice.hasNext(), is(true));
+    }
+
+    @Test
+    public void lookupVersionOfRecipeNotIndexed() {
+        when(recipeRepositoryMock.findVersionById(RECIPE_ID)).thenReturn(Optional.of(3L));
+
+        //a recipe created by another instance has a version, whatever the search index of this one holds
+        assertThat(recipeService.lookupVersion(RECIPE_ID), is(Optional.of(3L)));
+        verify(recipeSearchIndexMock, never()).isMissing(any());
+    }
+
+    @Test
+    public void searchAfterLastIndexedId() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        when(recipeSearchIndexMock.isReady()).thenReturn(true);
+        when(recipeTextIndexMock.isReady()).thenReturn(true);
+        when(recipeSearchIndexMock.search(criteria)).thenReturn(new BitSet());
+        when(recipeSearchCacheMock.get(eq(criteria), eq((long) Integer.MAX_VALUE), eq(1), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Slice<RecipeSummary>>>getArgument(3).get());
+
+        //invoke and verify an empty last slice rather than an overflow
+        Slice<RecipeSummary> slice = recipeService.search(criteria, (long) Integer.MAX_VALUE, 1);
+        assertThat(slice.getContent().isEmpty(), is(true));
+        assertThat(slice.hasNext(), is(false));
+    }
+
     /******************************
      *
      * Verify the invocation of dependencies.
@@ -98,10 +176,34 @@ public class RecipeServiceTest {
         verify(recipeRepositoryMock).delete(any(Recipe.class));
     }
 
+    @Test
+    public void lookupRecipeSummariesInChunks() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 1200; id++) {
+            ids.add(id);
+        }
+        when(recipeRepositoryMock.findSummariesByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> chunk = invocation.getArgument(0);
+            return chunk.stream().filter(id -> id % 2 == 0)
+                    .map(id -> new RecipeSummary(id, "recipe " + id, "", false, true, 1))
+                    .collect(Collectors.toList());
+        });
+
+        Map<Long, RecipeSummary> found = recipeService.lookupRecipeSummaries(ids);
+
+        ArgumentCaptor<Collection<Long>> chunks = ArgumentCaptor.forClass(Collection.class);
+        verify(recipeRepositoryMock, times(3)).findSummariesByIdIn(chunks.capture());
+        assertThat(chunks.getAllValues().stream().map(Collection::size).collect(Collectors.toList()),
+                is(Arrays.asList(500, 500, 256)));
+        assertThat(chunks.getAllValues().get(2).stream().distinct().count(), is(200L));
+        assertThat(found.size(), is(600));
+        assertThat(found.get(1200L).getName(), is("recipe 1200"));
+    }
+
     @Test
     public void update() {
         //invoke update
-        recipeService.update(RECIPE_ID,new RecipeDto("test", "test", false, true, 5));
+        recipeService.update(RECIPE_ID,new RecipeDto("test", "test", false, true, 5), null);
 
         //verify recipeRepositoryMock.save invoked once
         verify(recipeRepositoryMock).save(any(Recipe.class));
@@ -111,6 +213,14 @@ public class RecipeServiceTest {
         verify(recipeMock).setNoOfServings(5);
     }
 
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void updateStaleVersion() {
+        when(recipeMock.getVersion()).thenReturn(4L);
+
+        //invoke update with the version read before the last change
+        recipeService.update(RECIPE_ID, new RecipeDto("test", "test", false, true, 5), 3L);
+    }
+
     /******************************
      *
      * Verify the invocation of dependencies
@@ -134,4 +244,22 @@ public class RecipeServiceTest {
         assertThat(recipeArgumentCaptor.getValue().getNoOfServings(), is(5));
         assertThat(recipeArgumentCaptor.getValue().getName(), is("test"));
     }
+
+    @Test
+    public void createAll() {
+        RecipeDto soup = new RecipeDto("soup", "boil", false, true, 2);
+        soup.setIngredients(Collections.singletonList(new IngredientDto("carrot", "2")));
+        when(recipeRepositoryMock.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //invoke createAll
+        List<Recipe> recipes = recipeService.createAll(Arrays.asList(soup, new RecipeDto("stew", "simmer", true, false, 4)));
+
+        //verify the ingredients point back to their recipe and the text index is refreshed once
+        assertThat(recipes.size(), is(2));
+        Ingredient carrot = recipes.get(0).getIngredients().get(0);
+        assertThat(carrot.getName(), is("carrot"));
+        assertThat(carrot.getRecipe(), is(recipes.get(0)));
+        verify(recipeTextIndexMock).index(recipes);
+        verify(recipeSearchIndexMock).addRecipe(recipes.get(1));
+    }
 }
\ No newline at end of file
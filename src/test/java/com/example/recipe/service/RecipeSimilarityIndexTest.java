@@ -0,0 +1,75 @@
+package com.example.recipe.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RecipeSimilarityIndexTest {
+
+    @Mock
+    private RecipeSearchIndex recipeSearchIndexMock;
+
+    private RecipeSimilarityIndex index;
+
+    /**
+     * Index two tomato dishes sharing most of their ingredients, and an unrelated dessert.
+     */
+    @Before
+    public void buildIndex() {
+        when(recipeSearchIndexMock.documents()).thenReturn(Arrays.asList(
+                document(1L, "tomato", "onion", "garlic", "basil", "olive oil", "salt"),
+                document(2L, "tomato", "onion", "garlic", "basil", "olive oil", "pasta"),
+                document(3L, "flour", "sugar", "butter", "egg", "vanilla", "milk")));
+        index = new RecipeSimilarityIndex(recipeSearchIndexMock);
+        index.onIndexChange(new RecipeIndexEvent(null, null));
+    }
+
+    @Test
+    public void findSimilarRecipes() {
+        assertThat(index.contains(1L), is(true));
+        assertThat(index.similar(1L, 10), is(Collections.singletonList(2L)));
+        assertThat(index.similar(3L, 10), is(Collections.<Long>emptyList()));
+        assertThat(index.similar(4L, 10), is(Collections.<Long>emptyList()));
+    }
+
+    @Test
+    public void followIngredientChanges() {
+        RecipeDocument previous = document(4L, "flour", "sugar", "butter");
+        index.onIndexChange(new RecipeIndexEvent(null, previous));
+        index.onIndexChange(new RecipeIndexEvent(previous,
+                document(4L, "flour", "sugar", "butter", "egg", "vanilla", "milk", "cocoa")));
+        assertThat(index.similar(3L, 10), is(Collections.singletonList(4L)));
+
+        index.onIndexChange(new RecipeIndexEvent(document(2L, "tomato"), null));
+        assertThat(index.contains(2L), is(false));
+        assertThat(index.similar(1L, 10), is(Collections.<Long>emptyList()));
+    }
+
+    @Test
+    public void boundCandidatesOfCrowdedBuckets() {
+        for (long recipeId = 10; recipeId < 10 + 3 * RecipeSimilarityIndex.MAX_BUCKET_CANDIDATES; recipeId++) {
+            index.onIndexChange(new RecipeIndexEvent(null, document(recipeId, "rice", "water")));
+        }
+        assertThat(index.similar(10L, 1000).size() <= RecipeSimilarityIndex.MAX_BUCKET_CANDIDATES, is(true));
+    }
+
+    private static RecipeDocument document(long recipeId, String... names) {
+        Map<Long, String> ingredients = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            ingredients.put(recipeId * 10 + i, names[i]);
+        }
+        return new RecipeDocument(recipeId, true, false, 2, ingredients);
+    }
+}
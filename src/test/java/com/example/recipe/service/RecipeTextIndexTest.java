@@ -0,0 +1,108 @@
+package com.example.recipe.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.repo.RecipeRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RecipeTextIndexTest {
+
+    @Mock
+    private RecipeRepository recipeRepositoryMock;
+
+    private RecipeTextIndex index;
+
+    /**
+     * Index two recipes in a temporary directory.
+     */
+    @Before
+    public void buildIndex() {
+        doAnswer(invocation -> {
+            Consumer<RecipeSummary> consumer = invocation.getArgument(1);
+            consumer.accept(summary(1L, "Tomato soup", "Roast the tomatoes, then blend them with the stock."));
+            consumer.accept(summary(2L, "Roast chicken", "Roast the chicken and slice the tomatoes for the salad."));
+            return null;
+        }).when(recipeRepositoryMock).scrollSummaries(anyInt(), any());
+        index = new RecipeTextIndex(recipeRepositoryMock, true);
+        index.rebuild();
+    }
+
+    @After
+    public void closeIndex() throws IOException {
+        index.close();
+    }
+
+    @Test
+    public void matchesAllTerms() {
+        assertThat(index.matchesInstructions("tomato roast"), is(bits(1, 2)));
+        assertThat(index.matchesInstructions("tomatoes blend"), is(bits(1)));
+        assertThat(index.matchesInstructions("garlic"), is(bits()));
+    }
+
+    @Test
+    public void matchesInstructionsOnly() {
+        //the name of recipe 1 only
+        assertThat(index.matchesInstructions("soup"), is(bits()));
+        assertThat(index.matchesInstructions("tomato soup"), is(bits()));
+        //in the name and the instructions of recipe 2
+        assertThat(index.matchesInstructions("chicken"), is(bits(2)));
+        assertThat(index.rank("soup", 10), is(Arrays.asList(1L)));
+    }
+
+    @Test
+    public void matchesPhrases() {
+        assertThat(index.matchesInstructions("\"roast the chicken\""), is(bits(2)));
+        assertThat(index.matchesInstructions("\"chicken roast\""), is(bits()));
+    }
+
+    @Test
+    public void ranksNameMatchesFirst() {
+        assertThat(index.rank("tomato", 10), is(Arrays.asList(1L, 2L)));
+        assertThat(index.rank("chicken", 10), is(Arrays.asList(2L)));
+    }
+
+    @Test
+    public void updatedIncrementally() {
+        index.index(recipe(3L, "Garlic bread", "Spread the garlic butter."));
+        assertThat(index.matchesInstructions("garlic"), is(bits(3)));
+
+        index.index(recipe(3L, "Cheese bread", "Spread the butter."));
+        assertThat(index.matchesInstructions("garlic"), is(bits()));
+
+        index.remove(1L);
+        assertThat(index.matchesInstructions("tomato"), is(bits(2)));
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet bits = new BitSet();
+        Arrays.stream(ids).forEach(bits::set);
+        return bits;
+    }
+
+    private static RecipeSummary summary(Long id, String name, String instructions) {
+        return new RecipeSummary(id, name, instructions, false, false, 2);
+    }
+
+    private static Recipe recipe(Long id, String name, String instructions) {
+        Recipe recipe = new Recipe(name, instructions, false, false, 2, null);
+        recipe.setRecipeId(id);
+        return recipe;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.recipe.web;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.example.recipe.repo.PersistenceConfiguration;
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AsyncRequestsTest {
+
+    private final AsyncRequests asyncRequests = new AsyncRequests(1, 1, 30000, 10);
+
+    @After
+    public void shutdown() {
+        RequestContextHolder.resetRequestAttributes();
+        asyncRequests.shutdown();
+    }
+
+    @Test
+    public void runOnThePool() throws InterruptedException {
+        DeferredResult<Object> result = asyncRequests.submit(() -> Thread.currentThread().getName());
+        DeferredResult<Object> failed = asyncRequests.submit(() -> {
+            throw new NoSuchElementException("Recipe 5 not found");
+        });
+
+        assertThat(await(result).toString().startsWith("recipe-async-"), is(true));
+        assertThat(await(failed), instanceOf(NoSuchElementException.class));
+    }
+
+    @Test
+    public void runAsTheClientOfTheRequest() throws InterruptedException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/recipes/search");
+        request.setUserPrincipal(() -> "alice");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        DeferredResult<Object> result = asyncRequests.submit(() ->
+                Arrays.asList(PersistenceConfiguration.client(), RequestContextHolder.getRequestAttributes()));
+
+        assertThat(await(result), is(Arrays.asList("user:alice", null)));
+    }
+
+    @Test
+    public void noMoreWorkersThanConnections() {
+        AsyncRequests bounded = new AsyncRequests(16, 1, 30000, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            //two running, one queued
+            bounded.submit(() -> await(release));
+            bounded.submit(() -> await(release));
+            bounded.submit(() -> null);
+            bounded.submit(() -> null);
+            fail("Only two workers for two connections");
+        } catch (TaskRejectedException e) {
+            //expected
+        } finally {
+            release.countDown();
+            bounded.shutdown();
+        }
+    }
+
+    @Test(expected = TaskRejectedException.class)
+    public void rejectWhenFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            //one running, one queued
+            asyncRequests.submit(() -> await(release));
+            asyncRequests.submit(() -> null);
+
+            asyncRequests.submit(() -> null);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static Object await(DeferredResult<?> result) throws InterruptedException {
+        for (int i = 0; i < 500 && !result.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+        return result.getResult();
+    }
+
+    private static Object await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.recipe.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+
+import com.example.recipe.domain.Ingredient;
+import com.example.recipe.domain.PartialRecipe;
+import com.example.recipe.domain.Recipe;
+import com.example.recipe.domain.RecipeField;
+import com.example.recipe.domain.RecipeSummary;
+import com.example.recipe.service.RecipeFacets;
+import com.example.recipe.service.RecipeService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpMethod.PUT;
+
+/**
+ * Invoke the Controller methods via HTTP.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class RecipeControllerTest {
+
+    private static final long RECIPE_ID = 5L;
+    private static final String SEARCH_URL = "/recipes/search";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JwtRequestHelper jwtRequestHelper;
+
+    @MockBean
+    private RecipeService serviceMock;
+
+    /**
+     *  HTTP POST /recipes/search
+     */
+    @Test
+    public void searchRecipes() {
+        RecipeSummary recipe = new RecipeSummary(RECIPE_ID, "Tomato soup", "Simmer the tomatoes", false, true, 2);
+        when(serviceMock.search(any(RecipeSearchCriteria.class), isNull(), eq(1)))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(recipe), PageRequest.of(0, 1), true));
+
+        ResponseEntity<String> response = restTemplate.postForEntity(SEARCH_URL + "?size=1",
+                new RecipeSearchCriteria(), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody(), containsString("Tomato soup"));
+        assertThat(response.getBody(), containsString(SearchCursor.encode(RECIPE_ID)));
+    }
+
+    /**
+     *  HTTP POST /recipes/batch
+     */
+    @Test
+    public void createRecipes() {
+        RecipeBatch batch = new RecipeBatch();
+        batch.setRecipes(Arrays.asList(
+                new RecipeDto("Tomato soup", "Simmer the tomatoes for an hour", false, true, 2),
+                new RecipeDto("Onion soup", "Caramelize the onions for an hour", false, true, 4)));
+
+        ResponseEntity<Void> response = restTemplate.exchange("/recipes/batch", POST,
+                new HttpEntity<>(batch, jwtRequestHelper.withRole("ROLE_CSR")), Void.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.CREATED));
+        verify(serviceMock).createAll(argThat(recipes -> recipes.size() == 2));
+    }
+
+    /**
+     *  HTTP GET /recipes/{id}
+     */
+    @Test
+    public void getRecipe() {
+        when(serviceMock.lookupVersion(RECIPE_ID)).thenReturn(Optional.of(3L));
+        when(serviceMock.lookupRecipeSummaryById(RECIPE_ID)).thenReturn(Optional.of(
+                new RecipeSummary(RECIPE_ID, "Tomato soup", "Simmer the tomatoes", false, true, 2)));
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/recipes/" + RECIPE_ID, String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody(), containsString("Tomato soup"));
+        assertThat(response.getBody(), containsString("/recipes/" + RECIPE_ID));
+        assertThat(response.getHeaders().getETag(), is("\"3\""));
+    }
+
+    /**
+     *  HTTP GET /recipes/?ids=
+     */
+    @Test
+    public void getRecipes() {
+        Map<Long, RecipeSummary> found = new HashMap<>();
+        found.put(RECIPE_ID, new RecipeSummary(RECIPE_ID, "Tomato soup", "Simmer the tomatoes", false, true, 2));
+        found.put(2L, new RecipeSummary(2L, "Pea soup", "Simmer the peas", false, true, 4));
+        when(serviceMock.lookupRecipeSummaries(new LinkedHashSet<>(Arrays.asList(RECIPE_ID, 9L, 2L)))).thenReturn(found);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/recipes/?ids=" + RECIPE_ID + ",9,2," + RECIPE_ID,
+                String.class);
+
+        //found recipes in the order of the ids, the repeated id once
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody().indexOf("Tomato soup") < response.getBody().indexOf("Pea soup"), is(true));
+        assertThat(response.getBody().indexOf("Tomato soup"), is(response.getBody().lastIndexOf("Tomato soup")));
+        assertThat(response.getBody().replaceAll("\\s", ""), containsString("\"missing\":[9]"));
+
+        assertThat(restTemplate.getForEntity("/recipes/?ids=", String.class).getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     *  HTTP GET /recipes/{id}?fields=
+     */
+    @Test
+    public void getRecipeFields() {
+        long recipeId = 11L;
+        Map<RecipeField, Object> values = new EnumMap<>(RecipeField.class);
+        values.put(RecipeField.NAME, "Dal");
+        values.put(RecipeField.NO_OF_SERVINGS, 4);
+        when(serviceMock.lookupVersion(recipeId)).thenReturn(Optional.of(2L));
+        when(serviceMock.lookupRecipeFields(Collections.singleton(recipeId),
+                EnumSet.of(RecipeField.NAME, RecipeField.NO_OF_SERVINGS)))
+                .thenReturn(Collections.singletonMap(recipeId, new PartialRecipe(recipeId, values)));
+
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "/recipes/" + recipeId + "?fields=noOfServings,name", String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody().replaceAll("\\s", ""), containsString("\"name\":\"Dal\""));
+        assertThat(response.getBody().replaceAll("\\s", ""), containsString("\"noOfServings\":4"));
+        assertThat(response.getBody().contains("instructions"), is(false));
+        assertThat(response.getBody(), containsString("/recipes/" + recipeId));
+        assertThat(response.getHeaders().getETag(), is("\"2-fields.name.noOfServings\""));
+        verify(serviceMock, never()).lookupRecipeSummaryById(recipeId);
+
+        assertThat(restTemplate.getForEntity("/recipes/" + recipeId + "?fields=calories", String.class)
+                .getStatusCode(), is(HttpStatus.BAD_REQUEST));
+        assertThat(restTemplate.getForEntity("/recipes/" + recipeId + "?fields=name&include=ingredients", String.class)
+                .getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     *  HTTP GET /recipes/{id} twice at the same version
+     */
+    @Test
+    public void getRecipeCached() {
+        long recipeId = 8L;
+        when(serviceMock.lookupVersion(recipeId)).thenReturn(Optional.of(1L));
+        when(serviceMock.lookupRecipeSummaryById(recipeId)).thenReturn(Optional.of(
+                new RecipeSummary(recipeId, "Pea soup", "Simmer the peas", false, true, 4)));
+
+        ResponseEntity<String> first = restTemplate.getForEntity("/recipes/" + recipeId, String.class);
+        ResponseEntity<String> second = restTemplate.getForEntity("/recipes/" + recipeId, String.class);
+
+        assertThat(second.getStatusCode(), is(HttpStatus.OK));
+        assertThat(second.getBody(), is(first.getBody()));
+        assertThat(second.getHeaders().getETag(), is("\"1\""));
+        verify(serviceMock, times(1)).lookupRecipeSummaryById(recipeId);
+        assertThat(RecipeController.acceptsGzip("deflate, gzip;q=0.8"), is(true));
+        assertThat(RecipeController.acceptsGzip("gzip;q=0, br"), is(false));
+    }
+
+    /**
+     *  HTTP GET /recipes/{id} through a forwarded host that is not cached
+     */
+    @Test
+    public void getRecipeForwardedHostNotCached() {
+        long recipeId = 9L;
+        when(serviceMock.lookupVersion(recipeId)).thenReturn(Optional.of(1L));
+        when(serviceMock.lookupRecipeSummaryById(recipeId)).thenReturn(Optional.of(
+                new RecipeSummary(recipeId, "Pea soup", "Simmer the peas", false, true, 4)));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Forwarded-Host", "attacker.example");
+
+        for (int i = 0; i < 2; i++) {
+            ResponseEntity<String> response = restTemplate.exchange("/recipes/" + recipeId, GET,
+                    new HttpEntity<>(headers), String.class);
+            assertThat(response.getBody(), containsString("attacker.example"));
+        }
+        verify(serviceMock, times(2)).lookupRecipeSummaryById(recipeId);
+
+        //the configured host, in another case, is cached
+        headers.set("X-Forwarded-Host", "LocalHost");
+        restTemplate.exchange("/recipes/" + recipeId, GET, new HttpEntity<>(headers), String.class);
+        restTemplate.exchange("/recipes/" + recipeId, GET, new HttpEntity<>(headers), String.class);
+        verify(serviceMock, times(3)).lookupRecipeSummaryById(recipeId);
+    }
+
+    /**
+     *  HTTP GET /recipes/{id} with the entity tag of the current version
+     */
+    @Test
+    public void getRecipeNotModified() {
+        when(serviceMock.lookupVersion(RECIPE_ID)).thenReturn(Optional.of(3L));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"3\"");
+
+        ResponseEntity<String> response = restTemplate.exchange("/recipes/" + RECIPE_ID, GET,
+                new HttpEntity<>(headers), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.NOT_MODIFIED));
+        verify(serviceMock, never()).lookupRecipeSummaryById(RECIPE_ID);
+    }
+
+    /**
+     *  HTTP PUT /recipes/{id} with the entity tag of an older version
+     */
+    @Test
+    public void updateStaleRecipe() {
+        when(serviceMock.update(eq(RECIPE_ID), any(RecipeDto.class), eq(2L)))
+                .thenThrow(new OptimisticLockingFailureException("Recipe is at another version"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfMatch("\"2\"");
+
+        ResponseEntity<String> response = restTemplate.exchange("/recipes/" + RECIPE_ID, PUT, new HttpEntity<>(
+                new RecipeDto("Tomato soup", "Simmer the tomatoes for an hour", false, true, 2), headers), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.PRECONDITION_FAILED));
+    }
+
+    /**
+     *  HTTP GET /recipes/{id}?include=ingredients
+     */
+    @Test
+    public void getRecipeWithIngredients() {
+        Recipe recipe = new Recipe("Tomato soup", "Simmer the tomatoes", false, true, 2, new ArrayList<>());
+        recipe.setRecipeId(RECIPE_ID);
+        Ingredient tomato = new Ingredient("tomato", "6", recipe);
+        tomato.setIngredientId(7L);
+        recipe.getIngredients().add(tomato);
+        when(serviceMock.lookupVersion(RECIPE_ID)).thenReturn(Optional.of(3L));
+        when(serviceMock.lookupRecipeWithIngredients(RECIPE_ID)).thenReturn(Optional.of(recipe));
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/recipes/" + RECIPE_ID + "?include=ingredients",
+                String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody(), containsString("\"measurement\" : \"6\""));
+        assertThat(restTemplate.getForEntity("/recipes/" + RECIPE_ID + "?include=steps", String.class).getStatusCode(),
+                is(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     *  HTTP GET /recipes/{id}/similar
+     */
+    @Test
+    public void getSimilarRecipes() {
+        when(serviceMock.lookupSimilar(RECIPE_ID, 3)).thenReturn(Collections.singletonList(
+                new RecipeSummary(6L, "Tomato pasta", "Boil the pasta", false, true, 2)));
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/recipes/" + RECIPE_ID + "/similar?size=3",
+                String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody(), containsString("Tomato pasta"));
+        assertThat(response.getBody(), containsString("/recipes/6\"}"));
+    }
+
+    /**
+     *  HTTP POST /recipes/search with the cursor of a previous page, page size capped
+     */
+    @Test
+    public void searchRecipesNextPage() {
+        when(serviceMock.search(any(RecipeSearchCriteria.class), eq(RECIPE_ID), eq(100)))
+                .thenReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 100), false));
+
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                SEARCH_URL + "?size=5000&cursor=" + SearchCursor.encode(RECIPE_ID), new RecipeSearchCriteria(), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        verify(serviceMock).search(any(RecipeSearchCriteria.class), eq(RECIPE_ID), eq(100));
+    }
+
+    /**
+     *  HTTP POST /recipes/search with a forged cursor
+     */
+    @Test
+    public void searchRecipesInvalidCursor() {
+        ResponseEntity<String> response = restTemplate.postForEntity(SEARCH_URL + "?cursor=garbage",
+                new RecipeSearchCriteria(), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     *  HTTP POST /recipes/search with serves beyond the range of the servings
+     */
+    @Test
+    public void searchRecipesServesOutOfRange() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setServes(4294967300L);
+        ResponseEntity<String> response = restTemplate.postForEntity(SEARCH_URL, criteria, String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     *  HTTP POST /recipes/search/facets with a null required ingredient name
+     */
+    @Test
+    public void searchFacetsNullIngredient() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(Arrays.asList("salt", null));
+        ResponseEntity<String> response = restTemplate.postForEntity(SEARCH_URL + "/facets", criteria, String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     *  HTTP POST /recipes/search with more required ingredients than a search may have
+     */
+    @Test
+    public void searchRecipesTooManyIngredients() {
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria();
+        criteria.setIncludeIngredients(new ArrayList<>());
+        for (int i = 0; i <= RecipeSearchCriteria.MAX_INGREDIENTS; i++) {
+            criteria.getIncludeIngredients().add("ingredient" + i);
+        }
+        ResponseEntity<String> response = restTemplate.postForEntity(SEARCH_URL, criteria, String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     *  HTTP POST /recipes/search with a cursor past the ids of the search index
+     */
+    @Test
+    public void searchRecipesCursorOutOfRange() {
+        for (long recipeId : new long[] {(long) Integer.MAX_VALUE + 1, Long.MAX_VALUE}) {
+            ResponseEntity<String> response = restTemplate.postForEntity(
+                    SEARCH_URL + "?cursor=" + SearchCursor.encode(recipeId), new RecipeSearchCriteria(), String.class);
+
+            assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+        }
+    }
+
+    /**
+     *  HTTP GET /recipes/search/text
+    @Test
+    public void searchRecipesText() {
+        RecipeSummary recipe = new RecipeSummary(RECIPE_ID, "Tomato soup", "Simmer the tomatoes", false, true, 2);
+        when(serviceMock.searchText("\"tomato soup\"", 20)).thenReturn(Collections.singletonList(recipe));
+
+        ResponseEntity<String> response = restTemplate.getForEntity(SEARCH_URL + "/text?q={q}", String.class,
+                "\"tomato soup\"");
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody(), containsString("Tomato soup"));
+    }
+
+    /**
+     *  HTTP POST /recipes/search/facets
+     */
+    @Test
+    public void searchFacets() {
+        when(serviceMock.facets(any(RecipeSearchCriteria.class), eq(3))).thenReturn(Optional.of(new RecipeFacets(2,
+                Collections.singletonMap(true, 2), Collections.singletonMap(false, 2),
+                Collections.singletonMap(4, 2), Collections.singletonMap("onion", 2))));
+
+        ResponseEntity<String> response = restTemplate.postForEntity(SEARCH_URL + "/facets?ingredients=3",
+                new RecipeSearchCriteria(), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody(), containsString("\"onion\":2"));
+    }
+
+    /**
+     *  HTTP POST /recipes/search/facets while the search index is not available
+     */
+    @Test
+    public void searchFacetsUnavailable() {
+        when(serviceMock.facets(any(RecipeSearchCriteria.class), eq(10))).thenReturn(Optional.empty());
+
+        ResponseEntity<String> response = restTemplate.postForEntity(SEARCH_URL + "/facets",
+                new RecipeSearchCriteria(), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.recipe.web;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import com.example.recipe.domain.Ingredient;
 import com.example.recipe.domain.Recipe;
@@ -18,20 +20,28 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpMethod.DELETE;
+import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.HttpMethod.PUT;
 
 /**
  *
@@ -102,6 +112,52 @@ public class RecipeIngredientControllerTest {
         verify(serviceMock).delete(RECIPE_ID, INGREDIENT_ID);
     }
 
+    /**
+     *  HTTP POST /recipes/{recipeId}/ingredients/batch
+     */
+    @Test
+    public void createRecipeIngredients() {
+        IngredientBatch batch = new IngredientBatch();
+        batch.setIngredients(Arrays.asList(ingredientDto, new IngredientDto("salt", "a pinch")));
+
+        ResponseEntity<Void> response = restTemplate.exchange(RECIPE_INGREDIENTS_URL + "/batch", POST,
+                new HttpEntity(batch, jwtRequestHelper.withRole("ROLE_CSR")), Void.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.CREATED));
+        verify(serviceMock).createAll(RECIPE_ID, batch.getIngredients());
+    }
+
+    /**
+     *  HTTP PUT /recipes/{recipeId}/ingredients
+     */
+    @Test
+    public void replaceRecipeIngredients() {
+        IngredientBatch batch = new IngredientBatch();
+        batch.setIngredients(Collections.singletonList(ingredientDto));
+        when(recipeMock.getVersion()).thenReturn(5L);
+        when(serviceMock.replaceAll(RECIPE_ID, batch.getIngredients(), 4L)).thenReturn(recipeMock);
+        HttpHeaders headers = jwtRequestHelper.withRole("ROLE_CSR");
+        headers.setIfMatch("\"4-1f\"");
+
+        ResponseEntity<Void> response = restTemplate.exchange(RECIPE_INGREDIENTS_URL, PUT,
+                new HttpEntity(batch, headers), Void.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.NO_CONTENT));
+        assertThat(response.getHeaders().getETag(), is("\"5\""));
+    }
+
+    /**
+     *  HTTP DELETE /recipes/{recipeId}/ingredients?ids=
+     */
+    @Test
+    public void deleteRecipeIngredients() {
+
+        restTemplate.exchange(RECIPE_INGREDIENTS_URL + "?ids=1,2", DELETE,
+                new HttpEntity(jwtRequestHelper.withRole("ROLE_CSR")), Void.class);
+
+        verify(serviceMock).deleteAll(RECIPE_ID, Arrays.asList(1L, 2L));
+    }
+
     /**
      *  HTTP GET /recipes/{recipeId}/ingredients
      */
@@ -110,10 +166,65 @@ public class RecipeIngredientControllerTest {
         List<Ingredient> listOfIngredients = Collections.singletonList(ingredientMock);
         PageImpl page = new PageImpl(listOfIngredients, PageRequest.of(0,10),1);
         when(serviceMock.lookupIngredients(anyLong(),any(Pageable.class))).thenReturn(page);
+        when(serviceMock.lookupIngredientsVersion(RECIPE_ID)).thenReturn(Optional.of(2L));
 
         ResponseEntity<String> response = restTemplate.getForEntity(RECIPE_INGREDIENTS_URL,String.class);
 
         assertThat(response.getStatusCode(), is(HttpStatus.OK));
         verify(serviceMock).lookupIngredients(anyLong(), any(Pageable.class));
+
+        //the same page again, unchanged: not loaded
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(response.getHeaders().getETag());
+        response = restTemplate.exchange(RECIPE_INGREDIENTS_URL, GET, new HttpEntity(headers), String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.NOT_MODIFIED));
+        verify(serviceMock).lookupIngredients(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void pageVariants() {
+        assertThat(RecipeIngredientController.pageVariant(null, PageRequest.of(1, 20)), is("p1s20"));
+        assertThat(RecipeIngredientController.pageVariant(5L, PageRequest.of(0, 20, Sort.by("name"))), is("a5s20"));
+        assertThat(RecipeIngredientController.pageVariant(null, PageRequest.of(0, 20, Sort.by("name"))),
+                not(RecipeIngredientController.pageVariant(null, PageRequest.of(0, 20, Sort.by("measurement")))));
+        assertThat(RecipeIngredientController.pageVariant(null, PageRequest.of(0, 20, Sort.by("name \"x"))),
+                not(containsString("\"")));
+    }
+
+    /**
+     *  HTTP GET /recipes/{recipeId}/ingredients of a missing recipe
+     */
+    @Test
+    public void getIngredientsForMissingRecipe() {
+        when(serviceMock.lookupIngredientsVersion(RECIPE_ID)).thenReturn(Optional.empty());
+
+        ResponseEntity<String> response = restTemplate.getForEntity(RECIPE_INGREDIENTS_URL, String.class);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.NOT_FOUND));
+        verify(serviceMock, never()).lookupIngredients(anyLong(), any(Pageable.class));
+    }
+
+    /**
+     *  HTTP GET /recipes/{recipeId}/ingredients?after=
+     */
+    @Test
+    public void getIngredientsAfter() {
+        when(serviceMock.lookupIngredients(RECIPE_ID, 0L, 1)).thenReturn(
+                new SliceImpl<>(Collections.singletonList(ingredientMock), PageRequest.of(0, 1), true));
+        when(serviceMock.lookupIngredientsVersion(RECIPE_ID)).thenReturn(Optional.of(2L));
+
+        ResponseEntity<String> response = restTemplate.getForEntity(RECIPE_INGREDIENTS_URL + "?after=0&size=1",
+                String.class);
+
+        //no count, a link to the ingredients after the last one returned
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(response.getBody(), containsString(NAME));
+        assertThat(response.getBody(), containsString("ingredients?size=1&after=" + INGREDIENT_ID));
+        assertThat(response.getBody(), not(containsString("totalElements")));
+        verify(serviceMock, never()).lookupIngredients(anyLong(), any(Pageable.class));
+
+        assertThat(restTemplate.getForEntity(RECIPE_INGREDIENTS_URL + "?after=-1", String.class).getStatusCode(),
+                is(HttpStatus.BAD_REQUEST));
     }
 }
\ No newline at end of file